@@ -0,0 +1,62 @@
+package com.bookstore.config;
+
+import com.bookstore.model.Author;
+import com.bookstore.service.AuthorService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Links books saved before authors existed to their author, creating the authors from the
+ * books' author names. Works in chunks, each in its own transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuthorMigration implements CommandLineRunner {
+    
+    private static final int CHUNK_SIZE = 1000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final AuthorService authorService;
+    
+    @Override
+    public void run(String... args) throws Exception {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long linked = 0;
+        int count;
+        do {
+            count = transactionTemplate.execute(status -> linkChunk());
+            linked += count;
+        } while (count == CHUNK_SIZE);
+        
+        if (linked > 0) {
+            log.info("✓ Linked {} books to their authors", linked);
+        }
+    }
+    
+    private int linkChunk() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select id, author_name from books where author_id is null order by id limit " + CHUNK_SIZE);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Map<String, Long> authorIds = authorService.resolveAll(rows.stream()
+                .map(row -> (String) row.get("author_name"))
+                .collect(Collectors.toList()));
+        jdbcTemplate.batchUpdate("update books set author_id = ? where id = ?", rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, authorIds.get(Author.keyOf((String) row.get("author_name"))));
+            ps.setLong(2, ((Number) row.get("id")).longValue());
+        });
+        return rows.size();
+    }
+}
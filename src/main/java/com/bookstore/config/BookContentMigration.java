@@ -0,0 +1,101 @@
+package com.bookstore.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copies descriptions from the old books.description column into book_contents. Works in
+ * chunks, each in its own transaction, so an interrupted run just continues on the next
+ * startup. The column itself is left in place; {@link BookDescriptionColumnDrop} removes it
+ * once the copy is verified and the drop is enabled.
+ */
+@Slf4j
+@Component
+@Order(BookContentMigration.ORDER)
+@RequiredArgsConstructor
+public class BookContentMigration implements CommandLineRunner {
+    
+    static final int ORDER = 10;
+    private static final int CHUNK_SIZE = 1000;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    
+    @Override
+    public void run(String... args) throws Exception {
+        Integer columns = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns where table_schema = database() " +
+                "and table_name = 'books' and column_name = 'description'", Integer.class);
+        if (columns == null || columns == 0) {
+            return;
+        }
+        
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long moved = 0;
+        int count;
+        do {
+            count = transactionTemplate.execute(status -> moveChunk());
+            moved += count;
+        } while (count == CHUNK_SIZE);
+        if (moved > 0) {
+            log.info("\u2713 Copied {} book descriptions to book_contents", moved);
+        }
+    }
+    
+    /**
+     * Copy one chunk of descriptions and point their books at the new rows
+     */
+    private int moveChunk() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select id, description from books where content_id is null and description is not null " +
+                "order by id limit " + CHUNK_SIZE);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(
+                        "insert into book_contents (description) values (?)", Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, (String) rows.get(i).get("description"));
+                    }
+                    
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keys);
+        
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        jdbcTemplate.batchUpdate("update books set content_id = ? where id = ?", new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, ((Number) keyList.get(i).values().iterator().next()).longValue());
+                ps.setLong(2, ((Number) rows.get(i).get("id")).longValue());
+            }
+            
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        return rows.size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.bookstore.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops the old books.description column after {@link BookContentMigration} has copied it.
+ * Off unless bookstore.migration.drop-book-description is set, and skipped while any book
+ * still has a description that is missing from or different in book_contents.
+ */
+@Slf4j
+@Component
+@Order(BookContentMigration.ORDER + 1)
+@RequiredArgsConstructor
+public class BookDescriptionColumnDrop implements CommandLineRunner {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Value("${bookstore.migration.drop-book-description:false}")
+    private boolean enabled;
+    
+    @Override
+    public void run(String... args) throws Exception {
+        Integer columns = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.columns where table_schema = database() " +
+                "and table_name = 'books' and column_name = 'description'", Integer.class);
+        if (columns == null || columns == 0) {
+            return;
+        }
+        
+        Long uncopied = jdbcTemplate.queryForObject(
+                "select count(*) from books b left join book_contents c on c.id = b.content_id " +
+                "where b.description is not null and (c.id is null or not (c.description <=> b.description))",
+                Long.class);
+        if (uncopied == null || uncopied > 0) {
+            log.warn("books.description kept: {} descriptions are not in book_contents", uncopied);
+            return;
+        }
+        if (!enabled) {
+            log.info("books.description is copied to book_contents and can be dropped " +
+                    "(bookstore.migration.drop-book-description=true)");
+            return;
+        }
+        
+        jdbcTemplate.execute("alter table books drop column description");
+        log.info("\u2713 Dropped books.description");
+    }
+}
@@ -0,0 +1,32 @@
+package com.bookstore.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drops the books.thumbnail_path and books.medium_image_path columns, which schema update left
+ * behind. They only held rendition paths that are derived from image_path when served.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookRenditionColumnDrop implements CommandLineRunner {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public void run(String... args) throws Exception {
+        for (String column : new String[] {"thumbnail_path", "medium_image_path"}) {
+            Integer columns = jdbcTemplate.queryForObject(
+                    "select count(*) from information_schema.columns where table_schema = database() " +
+                    "and table_name = 'books' and column_name = ?", Integer.class, column);
+            if (columns != null && columns > 0) {
+                jdbcTemplate.execute("alter table books drop column " + column);
+                log.info("\u2713 Dropped books.{}", column);
+            }
+        }
+    }
+}
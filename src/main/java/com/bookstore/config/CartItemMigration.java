@@ -0,0 +1,48 @@
+package com.bookstore.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Adds the unique (user_id, book_id) key to cart_items when schema update could not, because
+ * older carts hold several lines for the same book. Those are merged into their oldest line
+ * with the quantities summed first.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CartItemMigration implements CommandLineRunner {
+
+    private static final String UNIQUE_KEY = "uk_cart_items_user_book";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public void run(String... args) throws Exception {
+        Integer indexes = jdbcTemplate.queryForObject(
+                "select count(*) from information_schema.statistics where table_schema = database() " +
+                "and table_name = 'cart_items' and index_name = ?", Integer.class, UNIQUE_KEY);
+        if (indexes != null && indexes > 0) {
+            return;
+        }
+
+        Integer merged = new TransactionTemplate(transactionManager).execute(status -> {
+            jdbcTemplate.update(
+                    "update cart_items c join (select min(id) as keep_id, sum(quantity) as total from cart_items " +
+                    "group by user_id, book_id having count(*) > 1) d on c.id = d.keep_id set c.quantity = d.total");
+            return jdbcTemplate.update(
+                    "delete c from cart_items c join (select user_id, book_id, min(id) as keep_id from cart_items " +
+                    "group by user_id, book_id having count(*) > 1) d on c.user_id = d.user_id " +
+                    "and c.book_id = d.book_id and c.id <> d.keep_id");
+        });
+
+        jdbcTemplate.execute("alter table cart_items add constraint " + UNIQUE_KEY + " unique (user_id, book_id)");
+        log.info("\u2713 Merged {} duplicate cart lines and added {}", merged, UNIQUE_KEY);
+    }
+}
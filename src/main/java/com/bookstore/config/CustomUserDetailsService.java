@@ -2,6 +2,7 @@ package com.bookstore.config;
 
 import com.bookstore.model.User;
 import com.bookstore.repository.UserRepository;
+import com.bookstore.service.PrincipalCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -18,11 +19,15 @@ import java.util.Collections;
 public class CustomUserDetailsService implements UserDetailsService {
     
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
     
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        long cacheGeneration = principalCache.generation();
         User user = userRepository.findByUsernameAndActiveTrue(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        // Later requests resolve the user from the cache
+        principalCache.put(user, cacheGeneration);
         
         return new org.springframework.security.core.userdetails.User(
                 user.getUsername(),
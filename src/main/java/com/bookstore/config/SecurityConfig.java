@@ -9,6 +9,7 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
@@ -39,6 +40,15 @@ public class SecurityConfig {
         return authConfig.getAuthenticationManager();
     }
     
+    /**
+     * Uploaded images are public and immutable; serving them skips the filter chain entirely,
+     * so no security context or session is looked up per image
+     */
+    @Bean
+    public WebSecurityCustomizer webSecurityCustomizer() {
+        return web -> web.ignoring().requestMatchers("/uploads/**");
+    }
+    
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
@@ -46,12 +56,17 @@ public class SecurityConfig {
                 .ignoringRequestMatchers("/api/**") // Disable CSRF for API endpoints
             )
             .authorizeHttpRequests(auth -> auth
+                // Bulk import and update, before the public /api/books/** rule
+                .requestMatchers("/api/books/import/**", "/api/books/bulk/**").hasRole("ADMIN")
+                // Streamed catalog exports each hold a database connection for minutes
+                .requestMatchers(request -> request.getServletPath().startsWith("/api/books")
+                        && "true".equals(request.getParameter("stream"))).hasRole("ADMIN")
                 // Public endpoints
                 .requestMatchers("/", "/login", "/register", "/api/users/register", "/api/users/login", 
-                                "/api/users/check/**", "/css/**", "/js/**", "/images/**", "/uploads/**",
-                                "/api/books", "/api/books/**").permitAll()
+                                "/api/users/check/**", "/css/**", "/js/**", "/images/**",
+                                "/api/books", "/api/books/**", "/api/authors/**").permitAll()
                 // Admin endpoints
-                .requestMatchers("/admin/**", "/api/books").hasRole("ADMIN")
+                .requestMatchers("/admin/**", "/api/books", "/actuator/**").hasRole("ADMIN")
                 // User endpoints
                 .requestMatchers("/dashboard", "/profile", "/cart", "/checkout", "/orders", "/inquiry", "/feedback",
                                 "/api/cart/**", "/api/orders/**", "/api/inquiries/**", "/api/feedback/**", "/api/users/**").authenticated()
@@ -0,0 +1,49 @@
+package com.bookstore.controller;
+
+import com.bookstore.dto.AuthorDto;
+import com.bookstore.dto.BookPageDto;
+import com.bookstore.service.AuthorService;
+import com.bookstore.service.BookService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/authors")
+@RequiredArgsConstructor
+public class AuthorController {
+    
+    private final AuthorService authorService;
+    private final BookService bookService;
+    
+    /**
+     * Get one page of an author's books, newest first
+     * GET /api/authors/{id}/books?cursor=nextCursor&size=20
+     */
+    @GetMapping("/{id}/books")
+    public ResponseEntity<?> getAuthorBooks(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            AuthorDto author = authorService.getAuthor(id);
+            BookPageDto page = bookService.getBooksByAuthor(id, cursor, size);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("author", author);
+            response.put("count", page.getBooks().size());
+            response.put("books", page.getBooks());
+            response.put("nextCursor", page.getNextCursor());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+}
@@ -1,25 +1,51 @@
 package com.bookstore.controller;
 
 import com.bookstore.dto.*;
+import com.bookstore.model.BookImportJob;
+import com.bookstore.service.BookBulkUpdateService;
+import com.bookstore.service.BookImportService;
 import com.bookstore.service.BookService;
+import com.bookstore.service.CatalogVersion;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/books")
 @RequiredArgsConstructor
 public class BookController {
     
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookBulkUpdateService bookBulkUpdateService;
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    
+    @Value("${bookstore.export.timeout-ms:600000}")
+    private long exportTimeoutMs;
     
     /**
      * Add a new book (Admin only)
@@ -55,18 +81,120 @@ public class BookController {
         }
     }
     
+    /**
+     * Bulk import books from the raw request body (Admin only)
+     * POST /api/books/import?format=csv|jsonl&resume={jobId}
+     * The format defaults to jsonl for JSON content types and csv otherwise. Pass resume with the id
+     * of a failed or interrupted import and the same file to continue after its last committed row.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "text/plain", "application/x-ndjson",
+            "application/jsonl", "application/octet-stream"})
+    public ResponseEntity<?> importBooks(
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) Long resume,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+        try {
+            if (format == null) {
+                format = contentType.contains("json") ? "jsonl" : "csv";
+            }
+            BookImportJob job = bookImportService.importBooks(body, format, resume);
+            boolean completed = job.getStatus() == BookImportJob.Status.COMPLETED;
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", completed);
+            response.put("message", completed ? "Import completed" : "Import failed: " + job.getFailureMessage());
+            response.put("job", job);
+            return completed ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Progress of a bulk import (Admin only)
+     * GET /api/books/import/{jobId}
+     */
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<?> getImportJob(@PathVariable Long jobId) {
+        try {
+            BookImportJob job = bookImportService.getJob(jobId);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("job", job);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+    }
+    
+    /**
+     * Bulk price change by author and/or availability for a list of bookIds (Admin only)
+     * POST /api/books/bulk
+     * With dryRun set, nothing is changed and the counts are of the books that would be.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkUpdate(@RequestBody BookBulkUpdateDto update) {
+        try {
+            BookBulkUpdateResultDto result = bookBulkUpdateService.applyRules(update);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", result.isDryRun() ? "Dry run, nothing was changed" : "Books updated successfully");
+            response.put("result", result);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
+    /**
+     * Set prices from a CSV price sheet with bookId and price columns, sent as the request body (Admin only)
+     * POST /api/books/bulk/prices?dryRun=false
+     */
+    @PostMapping(value = "/bulk/prices", consumes = {"text/csv", "text/plain", "application/octet-stream"})
+    public ResponseEntity<?> bulkUpdatePrices(
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            InputStream body) {
+        try {
+            BookBulkUpdateResultDto result = bookBulkUpdateService.applyPriceSheet(body, dryRun);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", dryRun ? "Dry run, nothing was changed" : "Prices updated successfully");
+            response.put("result", result);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
     /**
      * Get book by ID
      * GET /api/books/{id}
+     * Answers If-None-Match / If-Modified-Since with 304 from the catalog cache once the book has been read.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getBookById(@PathVariable Long id) {
+    public ResponseEntity<?> getBookById(@PathVariable Long id, WebRequest webRequest) {
         try {
             BookResponseDto book = bookService.getBookById(id);
+            long stamp = CatalogVersion.bookStamp(book.getUpdatedAt());
+            if (webRequest.checkNotModified(CatalogVersion.bookETag(id, stamp), stamp)) {
+                return null;
+            }
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("book", book);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -76,19 +204,111 @@ public class BookController {
     }
     
     /**
-     * Get all books with optional search and sort
-     * GET /api/books?search=keyword&sort=price_asc|price_desc
+     * Get one page of books with optional search and sort
+     * GET /api/books?search=keyword&fuzzy=true&sort=price_asc|price_desc&cursor=nextCursor&size=20&minPrice=&maxPrice=&descriptions=true
+     * The ETag is the catalog version, so unchanged pages are answered with 304 without a query.
+     * Book descriptions are left out unless descriptions=true.
      */
     @GetMapping
     public ResponseEntity<?> getAllBooks(
             @RequestParam(required = false) String search,
-            @RequestParam(required = false) String sort) {
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            @RequestParam(defaultValue = "false") boolean descriptions,
+            WebRequest webRequest) {
         try {
-            List<BookResponseDto> books = bookService.searchAndSortBooks(search, sort);
+            // Taken before reading, so a concurrent write can only make the ETag older than the data
+            CatalogVersion.Version version = catalogVersion.current();
+            if (webRequest.checkNotModified(version.eTag(), version.lastModified())) {
+                return null;
+            }
+            BookQueryDto query = new BookQueryDto(search, sort, cursor, size, minPrice, maxPrice, fuzzy, true, descriptions);
+            BookPageDto page = bookService.searchAndSortBooksPage(query);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("count", books.size());
-            response.put("books", books);
+            response.put("count", page.getBooks().size());
+            response.put("books", page.getBooks());
+            response.put("nextCursor", page.getNextCursor());
+            response.put("facets", page.getFacets());
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * Export the whole catalog as a stream, in id order (search and sort are not applied) (Admin only)
+     * GET /api/books?stream=true
+     */
+    @GetMapping(params = "stream=true")
+    public WebAsyncTask<Void> streamAllBooks(HttpServletResponse response) {
+        return streamBooks(false, response);
+    }
+    
+    /**
+     * Export available books as a stream, in id order (Admin only)
+     * GET /api/books/available?stream=true
+     */
+    @GetMapping(value = "/available", params = "stream=true")
+    public WebAsyncTask<Void> streamAvailableBooks(HttpServletResponse response) {
+        return streamBooks(true, response);
+    }
+    
+    /**
+     * Write the usual books envelope, but one book at a time straight to the response.
+     * Runs as an async task with its own timeout, since an export can take far longer than
+     * other async requests are allowed to.
+     */
+    private WebAsyncTask<Void> streamBooks(boolean availableOnly, HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        Callable<Void> export = () -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.writeStartObject();
+                generator.writeBooleanField("success", true);
+                generator.writeArrayFieldStart("books");
+                long[] count = {0};
+                bookService.forEachBook(availableOnly, book -> {
+                    try {
+                        generator.writeObject(book);
+                        count[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+                generator.writeNumberField("count", count[0]);
+                generator.writeEndObject();
+            } catch (RuntimeException e) {
+                // Headers are already sent, so the client sees a truncated document
+                log.error("Book export failed", e);
+                throw e;
+            }
+            return null;
+        };
+        return new WebAsyncTask<>(exportTimeoutMs, export);
+    }
+    
+    /**
+     * Typeahead suggestions for book and author names
+     * GET /api/books/suggest?q=prefix&limit=10
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggest(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            List<BookSuggestionDto> suggestions = bookService.suggest(q, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("count", suggestions.size());
+            response.put("suggestions", suggestions);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
@@ -100,17 +320,27 @@ public class BookController {
     
     /**
      * Get available books only
-     * GET /api/books/available
+     * GET /api/books/available?descriptions=true
+     * Book descriptions are left out unless descriptions=true.
      */
     @GetMapping("/available")
-    public ResponseEntity<?> getAvailableBooks() {
+    public ResponseEntity<?> getAvailableBooks(
+            @RequestParam(defaultValue = "false") boolean descriptions,
+            WebRequest webRequest) {
         try {
+            CatalogVersion.Version version = catalogVersion.current();
+            if (webRequest.checkNotModified(version.eTag(), version.lastModified())) {
+                return null;
+            }
             List<BookResponseDto> books = bookService.getAvailableBooks();
+            if (descriptions) {
+                books = bookService.withDescriptions(books);
+            }
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("count", books.size());
             response.put("books", books);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
             response.put("success", false);
@@ -172,12 +402,18 @@ public class BookController {
     
     /**
      * Search books by name
-     * GET /api/books/search/name/{name}
+     * GET /api/books/search/name/{name}?descriptions=true
+     * Book descriptions are left out unless descriptions=true.
      */
     @GetMapping("/search/name/{name}")
-    public ResponseEntity<?> searchBooksByName(@PathVariable String name) {
+    public ResponseEntity<?> searchBooksByName(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "false") boolean descriptions) {
         try {
             List<BookResponseDto> books = bookService.searchBooksByName(name);
+            if (descriptions) {
+                books = bookService.withDescriptions(books);
+            }
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("count", books.size());
@@ -193,12 +429,18 @@ public class BookController {
     
     /**
      * Search books by author
-     * GET /api/books/search/author/{author}
+     * GET /api/books/search/author/{author}?descriptions=true
+     * Book descriptions are left out unless descriptions=true.
      */
     @GetMapping("/search/author/{author}")
-    public ResponseEntity<?> searchBooksByAuthor(@PathVariable String author) {
+    public ResponseEntity<?> searchBooksByAuthor(
+            @PathVariable String author,
+            @RequestParam(defaultValue = "false") boolean descriptions) {
         try {
             List<BookResponseDto> books = bookService.searchBooksByAuthor(author);
+            if (descriptions) {
+                books = bookService.withDescriptions(books);
+            }
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("count", books.size());
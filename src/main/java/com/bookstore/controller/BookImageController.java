@@ -0,0 +1,177 @@
+package com.bookstore.controller;
+
+import com.bookstore.service.BookImageCache;
+import com.bookstore.service.BookImageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequiredArgsConstructor
+public class BookImageController {
+    
+    // Tomcat request attributes for handing a file to the connector's sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Last-Modified of files whose name identifies their content; the file time says nothing about it
+    private static final long IMMUTABLE_LAST_MODIFIED = Instant.parse("2000-01-01T00:00:00Z").toEpochMilli();
+    
+    private final BookImageService bookImageService;
+    private final BookImageCache bookImageCache;
+    
+    /**
+     * Get an uploaded book image, optionally resized
+     * GET /uploads/books/{filename}?size=thumb|medium|original
+     * Supports single byte ranges and If-None-Match / If-Modified-Since; hash- and UUID-named
+     * files are validated by their name, others by their time and size. Cached files are written
+     * from memory; others with sendfile when the connector supports it and FileChannel.transferTo
+     * otherwise.
+     */
+    @GetMapping("/uploads/books/{filename:.+}")
+    public void getImage(
+            @PathVariable String filename,
+            @RequestParam(required = false) String size,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        BookImageService.Rendition rendition;
+        try {
+            rendition = BookImageService.Rendition.of(size);
+        } catch (RuntimeException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Path path = bookImageService.resolve(filename, rendition);
+        if (path == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        
+        // Small files come from the off-heap cache, larger ones straight from disk
+        BookImageCache.Image cached = bookImageCache.get(path);
+        long length = cached != null ? cached.length() : Files.size(path);
+        // Hash- and UUID-named files never change; a fallback to the original may be replaced by its rendition
+        boolean exact = rendition == null || !path.getFileName().toString().equals(filename);
+        boolean immutable = exact && BookImageService.isImmutable(filename);
+        long lastModified;
+        String eTag;
+        if (immutable) {
+            lastModified = IMMUTABLE_LAST_MODIFIED;
+            eTag = "\"" + path.getFileName() + "\"";
+        } else {
+            lastModified = cached != null ? cached.lastModified() : Files.getLastModifiedTime(path).toMillis();
+            eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+        }
+        CacheControl cacheControl = immutable
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.maxAge(10, TimeUnit.MINUTES).cachePublic();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+            return;
+        }
+        
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && rangeApplies(request.getHeader(HttpHeaders.IF_RANGE), eTag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Several ranges would need a multipart body; the whole file is an allowed answer
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                long first = range.getRangeStart(length);
+                if (length == 0 || first >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                start = first;
+                end = range.getRangeEnd(length);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        
+        MediaType contentType = MediaTypeFactory.getMediaType(path.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(contentType.toString());
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        
+        if (cached != null) {
+            ByteBuffer bytes = cached.bytes();
+            bytes.position((int) start).limit((int) end + 1);
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat writes the file itself once this request returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += file.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+    
+    /**
+     * Whether a Range header is to be honoured: always without If-Range, otherwise only while
+     * the validator it carries still matches
+     */
+    private static boolean rangeApplies(String ifRange, String eTag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified / 1000 == date / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
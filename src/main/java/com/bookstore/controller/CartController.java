@@ -1,6 +1,8 @@
 package com.bookstore.controller;
 
+import com.bookstore.dto.CartBatchDto;
 import com.bookstore.dto.CartItemDto;
+import com.bookstore.dto.CartViewDto;
 import com.bookstore.service.CartService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -8,7 +10,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -41,6 +42,33 @@ public class CartController {
         }
     }
     
+    /**
+     * Apply several cart changes at once, in one transaction: all of them or none
+     * POST /api/cart/batch?username=xxx
+     * Body: {"operations": [{"type": "add", "bookId": 1, "quantity": 2}, {"type": "set", "cartItemId": 5, "quantity": 3},
+     *                       {"type": "remove", "cartItemId": 7}]}
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> applyBatch(
+            @RequestParam String username,
+            @RequestBody CartBatchDto batch) {
+        try {
+            CartViewDto cart = cartService.applyBatch(username, batch);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Cart updated successfully");
+            response.put("items", cart.getItems());
+            response.put("total", cart.getTotal());
+            response.put("count", cart.getItems().size());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+    
     /**
      * Get cart items
      * GET /api/cart?username=xxx
@@ -48,13 +76,12 @@ public class CartController {
     @GetMapping
     public ResponseEntity<?> getCartItems(@RequestParam String username) {
         try {
-            List<CartItemDto> items = cartService.getCartItems(username);
-            var total = cartService.getCartTotal(username);
+            CartViewDto cart = cartService.getCart(username);
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("items", items);
-            response.put("total", total);
-            response.put("count", items.size());
+            response.put("items", cart.getItems());
+            response.put("total", cart.getTotal());
+            response.put("count", cart.getItems().size());
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             Map<String, Object> response = new HashMap<>();
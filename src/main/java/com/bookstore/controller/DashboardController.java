@@ -1,5 +1,6 @@
 package com.bookstore.controller;
 
+import com.bookstore.dto.BookQueryDto;
 import com.bookstore.service.UserService;
 import com.bookstore.service.BookService;
 import com.bookstore.service.CartService;
@@ -58,14 +59,16 @@ public class DashboardController {
     @GetMapping("/dashboard")
     public String userDashboard(Authentication authentication, Model model,
                                @org.springframework.web.bind.annotation.RequestParam(required = false) String search,
-                               @org.springframework.web.bind.annotation.RequestParam(required = false) String sort) {
+                               @org.springframework.web.bind.annotation.RequestParam(required = false) String sort,
+                               @org.springframework.web.bind.annotation.RequestParam(required = false) String cursor) {
         if (authentication != null && authentication.isAuthenticated()) {
             String username = authentication.getName();
             try {
                 var user = userService.getUserByUsername(username);
-                var books = bookService.searchAndSortBooks(search, sort);
+                var page = bookService.searchAndSortBooksPage(new BookQueryDto(search, sort, cursor, null, null, null, false, false, true));
                 model.addAttribute("user", user);
-                model.addAttribute("books", books);
+                model.addAttribute("books", page.getBooks());
+                model.addAttribute("nextCursor", page.getNextCursor());
                 model.addAttribute("search", search != null ? search : "");
                 model.addAttribute("sort", sort != null ? sort : "");
                 model.addAttribute("title", "Dashboard - " + user.getFullName());
@@ -103,20 +106,22 @@ public class DashboardController {
     @GetMapping("/admin/dashboard")
     public String adminDashboard(Authentication authentication, Model model,
                                 @org.springframework.web.bind.annotation.RequestParam(required = false) String search,
-                                @org.springframework.web.bind.annotation.RequestParam(required = false) String sort) {
+                                @org.springframework.web.bind.annotation.RequestParam(required = false) String sort,
+                                @org.springframework.web.bind.annotation.RequestParam(required = false) String cursor) {
         if (authentication != null && authentication.isAuthenticated()) {
             String username = authentication.getName();
             try {
                 var user = userService.getUserByUsername(username);
                 var allUsers = userService.getAllUsers();
-                var allBooks = bookService.searchAndSortBooks(search, sort);
+                var page = bookService.searchAndSortBooksPage(new BookQueryDto(search, sort, cursor, null, null, null, false, false, true));
                 model.addAttribute("user", user);
                 model.addAttribute("allUsers", allUsers);
-                model.addAttribute("allBooks", allBooks);
+                model.addAttribute("allBooks", page.getBooks());
+                model.addAttribute("nextCursor", page.getNextCursor());
                 model.addAttribute("search", search != null ? search : "");
                 model.addAttribute("sort", sort != null ? sort : "");
                 model.addAttribute("userCount", allUsers.size());
-                model.addAttribute("bookCount", allBooks.size());
+                model.addAttribute("bookCount", bookService.countBooks());
                 model.addAttribute("title", "Admin Dashboard");
                 model.addAttribute("pageType", "admin");
             } catch (Exception e) {
@@ -136,11 +141,10 @@ public class DashboardController {
             String username = authentication.getName();
             try {
                 var user = userService.getUserByUsername(username);
-                var cartItems = cartService.getCartItems(username);
-                var cartTotal = cartService.getCartTotal(username);
+                var cart = cartService.getCart(username);
                 model.addAttribute("user", user);
-                model.addAttribute("cartItems", cartItems);
-                model.addAttribute("cartTotal", cartTotal);
+                model.addAttribute("cartItems", cart.getItems());
+                model.addAttribute("cartTotal", cart.getTotal());
                 model.addAttribute("title", "Shopping Cart");
             } catch (Exception e) {
                 model.addAttribute("error", "Error loading cart");
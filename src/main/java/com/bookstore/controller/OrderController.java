@@ -1,10 +1,10 @@
 package com.bookstore.controller;
 
+import com.bookstore.dto.UserResponseDto;
 import com.bookstore.model.Order;
-import com.bookstore.model.User;
 import com.bookstore.service.OrderService;
 import com.bookstore.service.OrderInquiryService;
-import com.bookstore.repository.UserRepository;
+import com.bookstore.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -24,7 +24,7 @@ public class OrderController {
     private OrderService orderService;
     
     @Autowired
-    private UserRepository userRepository;
+    private UserService userService;
     
     @Autowired
     private OrderInquiryService orderInquiryService;
@@ -32,8 +32,7 @@ public class OrderController {
     // Show checkout page
     @GetMapping("/checkout")
     public String showCheckout(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UserResponseDto user = userService.getUserByUsername(userDetails.getUsername());
         model.addAttribute("user", user);
         model.addAttribute("title", "Checkout - NovelNest");
         return "checkout";
@@ -73,8 +72,7 @@ public class OrderController {
     // Show user orders page
     @GetMapping("/orders")
     public String showUserOrders(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UserResponseDto user = userService.getUserByUsername(userDetails.getUsername());
         List<Order> orders = orderService.getUserOrders(userDetails.getUsername());
         model.addAttribute("user", user);
         model.addAttribute("orders", orders);
@@ -85,8 +83,7 @@ public class OrderController {
     // Show admin order management page
     @GetMapping("/admin/orders")
     public String showAdminOrders(@AuthenticationPrincipal UserDetails userDetails, Model model) {
-        User user = userRepository.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        UserResponseDto user = userService.getUserByUsername(userDetails.getUsername());
         List<Order> orders = orderService.getAllOrders();
         model.addAttribute("user", user);
         model.addAttribute("orders", orders);
@@ -0,0 +1,15 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorDto {
+    
+    private Long id;
+    private String name;
+    private long bookCount;
+}
@@ -0,0 +1,24 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBulkUpdateDto {
+    
+    // Change the price of every book by this author by a percentage, e.g. -15 or 10
+    private String authorName;
+    private BigDecimal percentChange;
+    
+    // Make these books available or unavailable
+    private List<String> bookIds;
+    private Boolean available;
+    
+    private boolean dryRun; // Only count the books that would change
+}
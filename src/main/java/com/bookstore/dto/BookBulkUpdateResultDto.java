@@ -0,0 +1,17 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookBulkUpdateResultDto {
+    
+    private boolean dryRun;
+    private long pricesChanged;
+    private long availabilityChanged;
+    private long notFound; // bookIds that are not in the catalog
+    private long rejected; // price sheet rows without a bookId or a valid price
+}
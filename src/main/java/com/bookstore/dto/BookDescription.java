@@ -0,0 +1,7 @@
+package com.bookstore.dto;
+
+/**
+ * A book's description by id, for the few list views that show descriptions
+ */
+public record BookDescription(Long id, String description) {
+}
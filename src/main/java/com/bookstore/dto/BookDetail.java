@@ -0,0 +1,20 @@
+package com.bookstore.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Every column of a single book, selected straight into a record
+ */
+public record BookDetail(
+        Long id,
+        String bookId,
+        String bookName,
+        BigDecimal price,
+        String description,
+        String authorName,
+        String imagePath,
+        Boolean available,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
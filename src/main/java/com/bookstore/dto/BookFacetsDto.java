@@ -0,0 +1,18 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookFacetsDto {
+    
+    private List<FacetCountDto> priceRanges; // e.g. "1000-2500", "10000+"
+    private List<FacetCountDto> authors; // Most frequent authors first
+    private long available;
+    private long unavailable;
+}
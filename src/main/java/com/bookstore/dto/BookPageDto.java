@@ -0,0 +1,22 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPageDto {
+
+    private List<BookResponseDto> books;
+    private String nextCursor;
+    private BookFacetsDto facets; // Only set when requested and the facet index is built
+    
+    public BookPageDto(List<BookResponseDto> books, String nextCursor) {
+        this.books = books;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,23 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookQueryDto {
+    
+    private String search;
+    private String sort; // price_asc, price_desc or empty for newest first
+    private String cursor; // nextCursor of the previous page
+    private Integer size;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private boolean fuzzy; // Tolerate typos in the search keywords
+    private boolean facets; // Also count price ranges, authors and availability of all matches
+    private boolean descriptions; // Load book descriptions, left out of list results by default
+}
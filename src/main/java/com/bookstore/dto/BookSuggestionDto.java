@@ -0,0 +1,15 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSuggestionDto {
+    
+    private String text;
+    private String type; // book or author
+    private Long bookId; // Only set for books
+}
@@ -0,0 +1,19 @@
+package com.bookstore.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Book columns for list views, selected straight into a record; leaves out the description
+ */
+public record BookSummary(
+        Long id,
+        String bookId,
+        String bookName,
+        BigDecimal price,
+        String authorName,
+        String imagePath,
+        Boolean available,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
@@ -0,0 +1,25 @@
+package com.bookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartBatchDto {
+    
+    private List<Operation> operations;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operation {
+        private String type; // add, set or remove
+        private Long bookId; // add, or instead of cartItemId for set and remove
+        private Long cartItemId;
+        private Integer quantity; // Added for add (default 1), new quantity for set
+    }
+}
@@ -0,0 +1,16 @@
+package com.bookstore.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * A cart item with the book columns shown for it, selected in one join
+ */
+public record CartLine(
+        Long id,
+        Long bookId,
+        String bookName,
+        String authorName,
+        String imagePath,
+        BigDecimal priceAtAddition,
+        Integer quantity) {
+}
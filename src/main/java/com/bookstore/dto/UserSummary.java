@@ -0,0 +1,21 @@
+package com.bookstore.dto;
+
+import com.bookstore.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * User columns shown to clients, selected straight into a record; never includes the password
+ */
+public record UserSummary(
+        Long id,
+        String username,
+        String email,
+        String fullName,
+        String phoneNumber,
+        String address,
+        User.Role role,
+        Boolean active,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -12,7 +14,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_price_id", columnList = "price, id"),
+        @Index(name = "idx_books_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_books_author_created_at_id", columnList = "author_id, created_at, id"),
+        @Index(name = "idx_books_author_id", columnList = "author_id, id"),
+        @Index(name = "idx_books_image_path", columnList = "image_path")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,15 +45,18 @@ public class Book {
     @DecimalMin(value = "0.0", inclusive = false, message = "Price must be greater than 0")
     private BigDecimal price;
     
-    @Column(length = 2000)
-    @Size(max = 2000, message = "Description cannot exceed 2000 characters")
-    private String description;
-    
     @Column(name = "author_name", nullable = false)
     @NotBlank(message = "Author name is required")
     @Size(min = 2, max = 100, message = "Author name must be between 2 and 100 characters")
     private String authorName;
     
+    // The author's books are looked up through this key; authorName keeps the spelling shown
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "author_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Author author;
+    
     @Column(name = "image_path", length = 500)
     private String imagePath;
     
@@ -59,4 +70,25 @@ public class Book {
     @UpdateTimestamp
     @Column(nullable = false)
     private LocalDateTime updatedAt;
+    
+    // Description and other long-form text, only read when asked for
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "content_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private BookContent content;
+    
+    public String getDescription() {
+        return content != null ? content.getDescription() : null;
+    }
+    
+    public void setDescription(String description) {
+        if (content == null) {
+            if (description == null) {
+                return;
+            }
+            content = new BookContent();
+        }
+        content.setDescription(description);
+    }
 }
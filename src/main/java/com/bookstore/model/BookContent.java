@@ -0,0 +1,27 @@
+package com.bookstore.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Long-form text of a book, kept out of the books table so list queries read narrow rows.
+ * Loaded lazily through {@link Book#getContent()}.
+ */
+@Entity
+@Table(name = "book_contents")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookContent {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(length = 2000)
+    @Size(max = 2000, message = "Description cannot exceed 2000 characters")
+    private String description;
+}
@@ -0,0 +1,66 @@
+package com.bookstore.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a bulk catalog import. Saved in the same transaction as each batch of books,
+ * so lastCommittedRow is exactly where a failed import can resume.
+ */
+@Entity
+@Table(name = "book_import_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 10)
+    private String format; // csv or jsonl
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status = Status.RUNNING;
+    
+    // Data rows (not counting a CSV header) whose outcome is committed
+    @Column(nullable = false)
+    private Long lastCommittedRow = 0L;
+    
+    @Column(nullable = false)
+    private Long imported = 0L;
+    
+    // Rows whose bookId already exists, in the catalog or earlier in the file
+    @Column(nullable = false)
+    private Long duplicates = 0L;
+    
+    @Column(nullable = false)
+    private Long rejected = 0L;
+    
+    // The first rejected rows, one "row N: reason" per line
+    @Column(length = 4000)
+    private String errors;
+    
+    @Column(length = 1000)
+    private String failureMessage;
+    
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+}
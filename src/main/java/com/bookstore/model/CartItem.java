@@ -10,7 +10,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cart_items")
+@Table(name = "cart_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cart_items_user_book", columnNames = {"user_id", "book_id"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
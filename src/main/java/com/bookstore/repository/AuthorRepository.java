@@ -0,0 +1,23 @@
+package com.bookstore.repository;
+
+import com.bookstore.model.Author;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AuthorRepository extends JpaRepository<Author, Long> {
+    
+    Optional<Author> findByNameKey(String nameKey);
+    
+    /**
+     * (nameKey, id) pairs
+     */
+    @Query("select a.nameKey, a.id from Author a where a.nameKey in :nameKeys")
+    List<Object[]> findIdsByNameKeyIn(@Param("nameKeys") Collection<String> nameKeys);
+}
@@ -0,0 +1,26 @@
+package com.bookstore.repository;
+
+import com.bookstore.model.BookImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface BookImportJobRepository extends JpaRepository<BookImportJob, Long> {
+    
+    /**
+     * Set a failed job, or a running one that saved no progress since staleBefore, back to running
+     * @return 1 if the job was claimed, 0 if it is still running elsewhere or not resumable
+     */
+    @Modifying
+    @Query("update BookImportJob j set j.status = com.bookstore.model.BookImportJob.Status.RUNNING, " +
+           "j.failureMessage = null, j.updatedAt = :now where j.id = :id " +
+           "and (j.status = com.bookstore.model.BookImportJob.Status.FAILED " +
+           "or (j.status = com.bookstore.model.BookImportJob.Status.RUNNING and j.updatedAt < :staleBefore))")
+    int claimForResume(@Param("id") Long id, @Param("staleBefore") LocalDateTime staleBefore,
+                       @Param("now") LocalDateTime now);
+}
@@ -1,30 +1,159 @@
 package com.bookstore.repository;
 
+import com.bookstore.dto.BookDescription;
+import com.bookstore.dto.BookDetail;
+import com.bookstore.dto.BookSummary;
 import com.bookstore.model.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     
+    // Read queries select straight into records, so no entities are managed or dirty-checked
+    
+    String SUMMARY = "select new com.bookstore.dto.BookSummary(b.id, b.bookId, b.bookName, b.price, b.authorName, " +
+                     "b.imagePath, b.available, b.createdAt, b.updatedAt) from Book b ";
+    
+    String DETAIL = "select new com.bookstore.dto.BookDetail(b.id, b.bookId, b.bookName, b.price, c.description, " +
+                    "b.authorName, b.imagePath, b.available, b.createdAt, b.updatedAt) from Book b left join b.content c ";
+    
     Optional<Book> findByBookId(String bookId);
     
     boolean existsByBookId(String bookId);
     
-    List<Book> findByAvailableTrue();
+    /**
+     * Books after the given id with their content, for rebuilding the indexes page by page
+     */
+    @Query("select b from Book b left join fetch b.content where b.id > :id order by b.id")
+    List<Book> findWithContentAfter(@Param("id") Long id, Pageable pageable);
+    
+    @Query(DETAIL + "where b.id = :id")
+    Optional<BookDetail> findDetailById(@Param("id") Long id);
+    
+    @Query(DETAIL + "where b.bookId = :bookId")
+    Optional<BookDetail> findDetailByBookId(@Param("bookId") String bookId);
+    
+    @Query(SUMMARY + "where b.available = true")
+    List<BookSummary> findAvailableSummaries();
+    
+    @Query(SUMMARY + "where b.id in :ids")
+    List<BookSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query(SUMMARY + "where lower(b.bookName) like lower(concat('%', :name, '%'))")
+    List<BookSummary> findSummariesByBookName(@Param("name") String name, Sort sort);
+    
+    @Query(SUMMARY + "where lower(b.authorName) like lower(concat('%', :author, '%'))")
+    List<BookSummary> findSummariesByAuthorName(@Param("author") String author);
+    
+    @Query(SUMMARY + "where b.author.id = :authorId")
+    List<BookSummary> findSummariesByAuthorId(@Param("authorId") Long authorId);
+    
+    @Query("select count(b) from Book b where b.author.id = :authorId")
+    long countByAuthorId(@Param("authorId") Long authorId);
+    
+    @Query("select min(b.price) from Book b where b.author.id = :authorId")
+    BigDecimal findMinPriceByAuthorId(@Param("authorId") Long authorId);
+    
+    @Query("select b.bookId from Book b where b.bookId in :bookIds")
+    List<String> findExistingBookIds(@Param("bookIds") Collection<String> bookIds);
+    
+    // Bulk updates; they bypass @UpdateTimestamp, so callers pass updatedAt
+    
+    @Query("select b.id from Book b where b.author.id = :authorId and b.id > :afterId order by b.id")
+    List<Long> findIdsByAuthorAfter(@Param("authorId") Long authorId, @Param("afterId") long afterId, Pageable pageable);
+    
+    @Modifying
+    @Query("update Book b set b.price = round(b.price * :factor, 2), b.updatedAt = :now " +
+           "where b.author.id = :authorId and b.id in :ids")
+    int multiplyPriceByAuthor(@Param("authorId") Long authorId, @Param("factor") BigDecimal factor,
+                              @Param("now") LocalDateTime now, @Param("ids") Collection<Long> ids);
+    
+    long countByBookIdIn(Collection<String> bookIds);
+    
+    long countByImagePath(String imagePath);
+    
+    @Query("select distinct b.imagePath from Book b where b.imagePath is not null")
+    List<String> findAllImagePaths();
+    
+    @Modifying
+    @Query("update Book b set b.available = :available, b.updatedAt = :now where b.bookId in :bookIds")
+    int updateAvailability(@Param("bookIds") Collection<String> bookIds, @Param("available") boolean available,
+                           @Param("now") LocalDateTime now);
+    
+    @Query("select new com.bookstore.dto.BookDescription(b.id, c.description) from Book b join b.content c " +
+           "where b.id in :ids")
+    List<BookDescription> findDescriptions(@Param("ids") Collection<Long> ids);
+    
+    // Row-by-row streams for exports; MySQL only streams with a fetch size of Integer.MIN_VALUE
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("select b from Book b left join fetch b.content order by b.id")
+    Stream<Book> streamAll();
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("select b from Book b left join fetch b.content where b.available = true order by b.id")
+    Stream<Book> streamAvailable();
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query(SUMMARY + "order by b.id")
+    Stream<BookSummary> streamSummaries();
+    
+    @Query("select b.id from Book b order by b.id")
+    List<Long> findAllIds();
     
-    List<Book> findByBookNameContainingIgnoreCase(String bookName);
+    @Query("select b.id from Book b where b.updatedAt > :since")
+    List<Long> findIdsUpdatedAfter(@Param("since") LocalDateTime since);
     
-    List<Book> findByAuthorNameContainingIgnoreCase(String authorName);
+    // Keyset pages: rows strictly after the (sort key, id) of the previous page's last row.
+    // A null afterId starts from the first row; a null search or price bound matches every book.
     
-    List<Book> findAllByOrderByPriceAsc();
+    @Query(SUMMARY + "where (:search is null or lower(b.bookName) like lower(concat('%', :search, '%'))) " +
+           "and (:minPrice is null or b.price >= :minPrice) and (:maxPrice is null or b.price <= :maxPrice) " +
+           "and (:afterId is null or b.price > :afterPrice or (b.price = :afterPrice and b.id > :afterId)) " +
+           "order by b.price asc, b.id asc")
+    List<BookSummary> findPageByPriceAsc(@Param("search") String search,
+                                         @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                                         @Param("afterPrice") BigDecimal afterPrice,
+                                         @Param("afterId") Long afterId, Pageable pageable);
     
-    List<Book> findAllByOrderByPriceDesc();
+    @Query(SUMMARY + "where (:search is null or lower(b.bookName) like lower(concat('%', :search, '%'))) " +
+           "and (:minPrice is null or b.price >= :minPrice) and (:maxPrice is null or b.price <= :maxPrice) " +
+           "and (:afterId is null or b.price < :afterPrice or (b.price = :afterPrice and b.id < :afterId)) " +
+           "order by b.price desc, b.id desc")
+    List<BookSummary> findPageByPriceDesc(@Param("search") String search,
+                                          @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                                          @Param("afterPrice") BigDecimal afterPrice,
+                                          @Param("afterId") Long afterId, Pageable pageable);
     
-    List<Book> findByBookNameContainingIgnoreCaseOrderByPriceAsc(String bookName);
+    @Query(SUMMARY + "where (:search is null or lower(b.bookName) like lower(concat('%', :search, '%'))) " +
+           "and (:minPrice is null or b.price >= :minPrice) and (:maxPrice is null or b.price <= :maxPrice) " +
+           "and (:afterId is null or b.createdAt < :afterCreatedAt or (b.createdAt = :afterCreatedAt and b.id < :afterId)) " +
+           "order by b.createdAt desc, b.id desc")
+    List<BookSummary> findPageByNewest(@Param("search") String search,
+                                       @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice,
+                                       @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                       @Param("afterId") Long afterId, Pageable pageable);
     
-    List<Book> findByBookNameContainingIgnoreCaseOrderByPriceDesc(String bookName);
+    @Query(SUMMARY + "where b.author.id = :authorId " +
+           "and (:afterId is null or b.createdAt < :afterCreatedAt or (b.createdAt = :afterCreatedAt and b.id < :afterId)) " +
+           "order by b.createdAt desc, b.id desc")
+    List<BookSummary> findPageByAuthor(@Param("authorId") Long authorId,
+                                       @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                       @Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,8 +1,11 @@
 package com.bookstore.repository;
 
+import com.bookstore.dto.CartLine;
 import com.bookstore.model.CartItem;
 import com.bookstore.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -20,4 +23,11 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     void deleteByUser(User user);
     
     long countByUser(User user);
+    
+    @Query("select new com.bookstore.dto.CartLine(c.id, b.id, b.bookName, b.authorName, b.imagePath, " +
+           "c.priceAtAddition, c.quantity) from CartItem c join c.book b where c.user.id = :userId order by c.addedAt desc")
+    List<CartLine> findLinesByUserId(@Param("userId") Long userId);
+    
+    @Query("select c.user.id from CartItem c where c.id = :id")
+    Optional<Long> findUserIdById(@Param("id") Long id);
 }
@@ -2,8 +2,15 @@ package com.bookstore.repository;
 
 import com.bookstore.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+    
+    // Rows of [book id, total quantity ordered]
+    @Query("select oi.book.id, sum(oi.quantity) from OrderItem oi group by oi.book.id")
+    List<Object[]> sumQuantityByBook();
 }
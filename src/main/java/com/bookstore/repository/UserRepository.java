@@ -1,9 +1,13 @@
 package com.bookstore.repository;
 
+import com.bookstore.dto.UserSummary;
 import com.bookstore.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +22,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     
     Optional<User> findByUsernameAndActiveTrue(String username);
+    
+    // Read queries select straight into records, so no entities are managed or dirty-checked
+    
+    String SUMMARY = "select new com.bookstore.dto.UserSummary(u.id, u.username, u.email, u.fullName, " +
+                     "u.phoneNumber, u.address, u.role, u.active, u.createdAt, u.updatedAt) from User u ";
+    
+    @Query(SUMMARY + "where u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+    
+    @Query(SUMMARY + "where u.username = :username and u.active = true")
+    Optional<UserSummary> findActiveSummaryByUsername(@Param("username") String username);
+    
+    @Query(SUMMARY)
+    List<UserSummary> findAllSummaries();
 }
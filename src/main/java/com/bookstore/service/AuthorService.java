@@ -0,0 +1,123 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.AuthorDto;
+import com.bookstore.model.Author;
+import com.bookstore.repository.AuthorRepository;
+import com.bookstore.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@RequiredArgsConstructor
+public class AuthorService {
+    
+    private static final int KEY_CHUNK = 1000;
+    // Distinct author spellings kept for interning; past this, names are returned as they are
+    private static final int MAX_CANONICAL_NAMES = 100_000;
+    
+    private final AuthorRepository authorRepository;
+    private final BookRepository bookRepository;
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Map<String, String> canonicalNames = new ConcurrentHashMap<>();
+    
+    /**
+     * Get author by ID with the number of their books
+     */
+    public AuthorDto getAuthor(Long id) {
+        Author author = authorRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Author not found with id: " + id));
+        return new AuthorDto(author.getId(), canonicalName(author.getName()), bookRepository.countByAuthorId(id));
+    }
+    
+    /**
+     * Id of the author with this name, ignoring case and spacing, or null if there is none
+     */
+    public Long findId(String name) {
+        return authorRepository.findByNameKey(Author.keyOf(name)).map(Author::getId).orElse(null);
+    }
+    
+    /**
+     * The author with this name, created if it does not exist yet
+     */
+    public Author resolve(String name) {
+        return authorRepository.getReferenceById(resolveAll(List.of(name)).get(Author.keyOf(name)));
+    }
+    
+    /**
+     * Author ids by name key for all the names, creating the authors that do not exist yet.
+     * Missing authors are inserted with INSERT IGNORE, so concurrent callers adding the same
+     * author both end up with the one row the unique name key allows. Their ids are then read
+     * with a locking read, which sees a row another transaction committed after this one's
+     * snapshot, i.e. exactly the rows whose insert was ignored.
+     */
+    public Map<String, Long> resolveAll(Collection<String> names) {
+        Map<String, String> namesByKey = new LinkedHashMap<>();
+        for (String name : names) {
+            namesByKey.putIfAbsent(Author.keyOf(name), name.trim());
+        }
+        Map<String, Long> ids = findIds(namesByKey.keySet());
+        List<String> missing = namesByKey.keySet().stream()
+                .filter(key -> !ids.containsKey(key))
+                .toList();
+        if (!missing.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.batchUpdate("insert ignore into authors (name, name_key, created_at) values (?, ?, ?)",
+                    missing, missing.size(), (ps, key) -> {
+                        ps.setString(1, namesByKey.get(key));
+                        ps.setString(2, key);
+                        ps.setObject(3, now);
+                    });
+            ids.putAll(lockIds(missing));
+            for (String key : missing) {
+                if (ids.get(key) == null) {
+                    throw new RuntimeException("Could not resolve author: " + namesByKey.get(key));
+                }
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * One shared String instance per author spelling, so the many cached book DTOs of an author
+     * do not each hold their own copy of the name
+     */
+    public String canonicalName(String name) {
+        if (name == null || canonicalNames.size() >= MAX_CANONICAL_NAMES) {
+            return name;
+        }
+        String canonical = canonicalNames.putIfAbsent(name, name);
+        return canonical != null ? canonical : name;
+    }
+    
+    /**
+     * Ids by name key with SELECT ... FOR UPDATE, reading the latest committed rows
+     */
+    private Map<String, Long> lockIds(List<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        for (int from = 0; from < keys.size(); from += KEY_CHUNK) {
+            List<String> chunk = keys.subList(from, Math.min(keys.size(), from + KEY_CHUNK));
+            jdbcTemplate.query("select name_key, id from authors where name_key in (" +
+                            String.join(", ", Collections.nCopies(chunk.size(), "?")) + ") for update",
+                    (RowCallbackHandler) rs -> ids.put(rs.getString(1), rs.getLong(2)), chunk.toArray());
+        }
+        return ids;
+    }
+    
+    private Map<String, Long> findIds(Collection<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        List<String> all = new ArrayList<>(keys);
+        for (int from = 0; from < all.size(); from += KEY_CHUNK) {
+            for (Object[] row : authorRepository.findIdsByNameKeyIn(all.subList(from, Math.min(all.size(), from + KEY_CHUNK)))) {
+                ids.put((String) row[0], (Long) row[1]);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,235 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookBulkUpdateDto;
+import com.bookstore.dto.BookBulkUpdateResultDto;
+import com.bookstore.repository.BookRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Catalog-wide price and availability changes as set-based UPDATE statements.
+ * Work is split into chunks with one short transaction each, so no statement holds row locks
+ * on a large part of the books table for long. Counts are rows matched, which with MySQL's
+ * default found-rows reporting includes books that already had the new value.
+ */
+@Slf4j
+@Service
+public class BookBulkUpdateService {
+    
+    private static final int AUTHOR_BOOK_CHUNK = 5000;
+    private static final int BOOK_ID_CHUNK = 1000;
+    private static final int PRICE_SHEET_CHUNK = 500;
+    private static final List<String> PRICE_SHEET_COLUMNS = List.of("bookid", "price");
+    
+    private final BookRepository bookRepository;
+    private final BookIndexManager bookIndexManager;
+    private final BookCatalogCache bookCatalogCache;
+    private final CatalogVersion catalogVersion;
+    private final CatalogSnapshot catalogSnapshot;
+    private final AuthorService authorService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    public BookBulkUpdateService(BookRepository bookRepository,
+                                 BookIndexManager bookIndexManager,
+                                 BookCatalogCache bookCatalogCache,
+                                 CatalogVersion catalogVersion,
+                                 CatalogSnapshot catalogSnapshot,
+                                 AuthorService authorService,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.bookIndexManager = bookIndexManager;
+        this.bookCatalogCache = bookCatalogCache;
+        this.catalogVersion = catalogVersion;
+        this.catalogSnapshot = catalogSnapshot;
+        this.authorService = authorService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Apply rule-based changes: a percentage price change for one author's books and/or
+     * availability for a list of bookIds. A price change that would round the author's cheapest
+     * book to 0.00 or less is rejected.
+     */
+    public BookBulkUpdateResultDto applyRules(BookBulkUpdateDto update) {
+        boolean priceRule = update.getPercentChange() != null;
+        boolean availabilityRule = update.getAvailable() != null;
+        if (!priceRule && !availabilityRule) {
+            throw new RuntimeException("Nothing to update: give percentChange or available");
+        }
+        if (priceRule && (update.getAuthorName() == null || update.getAuthorName().isBlank())) {
+            throw new RuntimeException("Author name is required for a price change");
+        }
+        if (priceRule && update.getPercentChange().compareTo(BigDecimal.valueOf(-100)) <= 0) {
+            throw new RuntimeException("Percent change must be greater than -100");
+        }
+        if (availabilityRule && (update.getBookIds() == null || update.getBookIds().isEmpty())) {
+            throw new RuntimeException("Book IDs are required to change availability");
+        }
+        
+        BookBulkUpdateResultDto result = new BookBulkUpdateResultDto();
+        result.setDryRun(update.isDryRun());
+        LocalDateTime now = LocalDateTime.now();
+        
+        if (priceRule) {
+            Long authorId = authorService.findId(update.getAuthorName());
+            BigDecimal factor = BigDecimal.ONE.add(update.getPercentChange().movePointLeft(2));
+            BigDecimal minPrice = authorId != null ? bookRepository.findMinPriceByAuthorId(authorId) : null;
+            // Rounded the way the UPDATE rounds, to two decimals half away from zero
+            if (minPrice != null && minPrice.multiply(factor).setScale(2, RoundingMode.HALF_UP).signum() <= 0) {
+                throw new RuntimeException("Percent change would price " + update.getAuthorName()
+                        + "'s cheapest book (" + minPrice + ") at 0.00");
+            }
+            if (authorId == null) {
+                result.setPricesChanged(0);
+            } else if (update.isDryRun()) {
+                result.setPricesChanged(bookRepository.countByAuthorId(authorId));
+            } else {
+                long changed = 0;
+                long afterId = 0;
+                // Walk the author's own ids, so the work follows their books rather than the id span
+                List<Long> ids;
+                while (!(ids = bookRepository.findIdsByAuthorAfter(authorId, afterId,
+                        PageRequest.of(0, AUTHOR_BOOK_CHUNK))).isEmpty()) {
+                    List<Long> chunk = ids;
+                    changed += inTransaction(() -> bookRepository.multiplyPriceByAuthor(authorId, factor, now, chunk));
+                    afterId = ids.get(ids.size() - 1);
+                }
+                result.setPricesChanged(changed);
+            }
+        }
+        
+        if (availabilityRule) {
+            List<String> bookIds = update.getBookIds().stream()
+                    .filter(Objects::nonNull)
+                    .map(String::trim)
+                    .distinct()
+                    .collect(Collectors.toList());
+            long matched = 0;
+            for (int from = 0; from < bookIds.size(); from += BOOK_ID_CHUNK) {
+                List<String> chunk = bookIds.subList(from, Math.min(bookIds.size(), from + BOOK_ID_CHUNK));
+                matched += update.isDryRun()
+                        ? bookRepository.countByBookIdIn(chunk)
+                        : inTransaction(() -> bookRepository.updateAvailability(chunk, update.getAvailable(), now));
+            }
+            result.setAvailabilityChanged(matched);
+            result.setNotFound(bookIds.size() - matched);
+        }
+        
+        if (!update.isDryRun()) {
+            catalogChanged(result.getPricesChanged() + result.getAvailabilityChanged());
+        }
+        return result;
+    }
+    
+    /**
+     * Set prices from a CSV price sheet with bookId and price columns
+     * Rows without a bookId or a positive price are counted as rejected. If reading fails part way,
+     * the chunks already applied stay applied.
+     */
+    public BookBulkUpdateResultDto applyPriceSheet(InputStream sheet, boolean dryRun) {
+        BookBulkUpdateResultDto result = new BookBulkUpdateResultDto();
+        result.setDryRun(dryRun);
+        LocalDateTime now = LocalDateTime.now();
+        try (CsvParser parser = new CsvParser(sheet)) {
+            Map<String, Integer> columns = parser.readHeader(PRICE_SHEET_COLUMNS);
+            Map<String, BigDecimal> prices = new LinkedHashMap<>();
+            List<String> fields;
+            while ((fields = parser.next()) != null) {
+                String bookId = CsvParser.field(fields, columns, "bookid");
+                BigDecimal price = parsePrice(CsvParser.field(fields, columns, "price"));
+                if (bookId == null || price == null) {
+                    result.setRejected(result.getRejected() + 1);
+                    continue;
+                }
+                prices.put(bookId.trim(), price);
+                if (prices.size() == PRICE_SHEET_CHUNK) {
+                    applyPrices(prices, dryRun, now, result);
+                    prices.clear();
+                }
+            }
+            if (!prices.isEmpty()) {
+                applyPrices(prices, dryRun, now, result);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read price sheet: " + e.getMessage());
+        } finally {
+            if (!dryRun) {
+                catalogChanged(result.getPricesChanged());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * One chunk of a price sheet as a single UPDATE ... SET price = CASE book_id ... statement
+     */
+    private void applyPrices(Map<String, BigDecimal> prices, boolean dryRun, LocalDateTime now,
+                             BookBulkUpdateResultDto result) {
+        long matched;
+        if (dryRun) {
+            matched = bookRepository.countByBookIdIn(prices.keySet());
+        } else {
+            StringBuilder sql = new StringBuilder("update books set price = case book_id");
+            List<Object> args = new ArrayList<>(prices.size() * 3 + 1);
+            prices.forEach((bookId, price) -> {
+                sql.append(" when ? then ?");
+                args.add(bookId);
+                args.add(price);
+            });
+            sql.append(" end, updated_at = ? where book_id in (")
+                    .append(String.join(", ", Collections.nCopies(prices.size(), "?")))
+                    .append(')');
+            args.add(now);
+            args.addAll(prices.keySet());
+            matched = inTransaction(() -> jdbcTemplate.update(sql.toString(), args.toArray()));
+        }
+        result.setPricesChanged(result.getPricesChanged() + matched);
+        result.setNotFound(result.getNotFound() + prices.size() - matched);
+    }
+    
+    private int inTransaction(Supplier<Integer> update) {
+        Integer rows = transactionTemplate.execute(status -> update.get());
+        return rows != null ? rows : 0;
+    }
+    
+    /**
+     * Drop cached books and rebuild the indexes after rows changed behind the entities' back
+     */
+    private void catalogChanged(long rows) {
+        if (rows > 0) {
+            log.info("Bulk update changed {} books", rows);
+            bookCatalogCache.evictAll();
+            catalogVersion.catalogChanged();
+            catalogSnapshot.invalidate();
+            bookIndexManager.rebuildInBackground();
+        }
+    }
+    
+    private static BigDecimal parsePrice(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            BigDecimal price = new BigDecimal(value.trim());
+            return price.signum() > 0 ? price : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
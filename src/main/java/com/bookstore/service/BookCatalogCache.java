@@ -0,0 +1,182 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookResponseDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of book DTOs by id, by bookId and as the all / available lists.
+ * Bounded by the estimated size of the cached DTOs and evicted least recently used first.
+ */
+@Component
+public class BookCatalogCache implements MeterBinder {
+
+    private static final String AVAILABLE_BOOKS = "available";
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    // Bumped on every invalidation so loads that started before it are not cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BookCatalogCache(@Value("${bookstore.catalog-cache.max-bytes:33554432}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public BookResponseDto getById(Long id, Supplier<BookResponseDto> loader) {
+        return get(idKey(id), loader, BookCatalogCache::weigh);
+    }
+
+    public BookResponseDto getByBookId(String bookId, Supplier<BookResponseDto> loader) {
+        return get(bookIdKey(bookId), loader, BookCatalogCache::weigh);
+    }
+
+    public List<BookResponseDto> getAvailableBooks(Supplier<List<BookResponseDto>> loader) {
+        return get(AVAILABLE_BOOKS, loader, BookCatalogCache::weigh);
+    }
+
+    /**
+     * Drop everything cached for one book, now and again once the current transaction
+     * commits, so a read racing the commit cannot leave the old version behind
+     */
+    public void evictBook(Long id, String bookId) {
+        Runnable eviction = () -> {
+            synchronized (this) {
+                generation++;
+                remove(idKey(id));
+                remove(bookIdKey(bookId));
+                remove(AVAILABLE_BOOKS);
+            }
+        };
+        eviction.run();
+        AfterCommit.run(eviction);
+    }
+
+    /**
+     * Drop the whole cache, for changes that touch many books at once
+     */
+    public void evictAll() {
+        Runnable eviction = () -> {
+            synchronized (this) {
+                generation++;
+                entries.clear();
+                usedBytes = 0;
+            }
+        };
+        eviction.run();
+        AfterCommit.run(eviction);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("bookstore.catalog.cache.hits", hits, AtomicLong::get).register(registry);
+        FunctionCounter.builder("bookstore.catalog.cache.misses", misses, AtomicLong::get).register(registry);
+        FunctionCounter.builder("bookstore.catalog.cache.evictions", evictions, AtomicLong::get).register(registry);
+        Gauge.builder("bookstore.catalog.cache.entries", this, cache -> cache.size()).register(registry);
+        Gauge.builder("bookstore.catalog.cache.bytes", this, cache -> cache.usedBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, Supplier<T> loader, Weigher<T> weigher) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return (T) entry.value;
+            }
+            loadGeneration = generation;
+        }
+        misses.incrementAndGet();
+
+        // Load outside the lock; concurrent misses for the same key may both hit the database
+        T value = loader.get();
+        long weight = weigher.weigh(value);
+        synchronized (this) {
+            // Entries larger than half the cache would evict everything else
+            if (loadGeneration == generation && weight <= maxBytes / 2) {
+                remove(key);
+                entries.put(key, new Entry(value, weight));
+                usedBytes += weight;
+                evictOverflow();
+            }
+        }
+        return value;
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().weight;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.weight;
+        }
+    }
+
+    private static String idKey(Long id) {
+        return "id:" + id;
+    }
+
+    private static String bookIdKey(String bookId) {
+        return "bookId:" + bookId;
+    }
+
+    /**
+     * Rough heap footprint of a DTO: fixed object overhead plus two bytes per character
+     */
+    private static long weigh(BookResponseDto dto) {
+        return 160 + 2L * (length(dto.getBookId()) + length(dto.getBookName()) + length(dto.getDescription())
+                + length(dto.getAuthorName()) + length(dto.getImagePath()));
+    }
+
+    private static long weigh(List<BookResponseDto> dtos) {
+        long weight = 16 + 8L * dtos.size();
+        for (BookResponseDto dto : dtos) {
+            weight += weigh(dto);
+        }
+        return weight;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    @FunctionalInterface
+    private interface Weigher<T> {
+        long weigh(T value);
+    }
+
+    private record Entry(Object value, long weight) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.bookstore.service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position in a paged book listing, passed to clients as an opaque token.
+ * Price sorts continue after (price, id), the default sort after (createdAt, id)
+ * and relevance-ranked searches after an offset into the ranked ids. The token names its
+ * order, so it is never continued in another one.
+ */
+final class BookCursor {
+
+    enum Kind {
+        PRICE_ASC, PRICE_DESC, CREATED, RANK
+    }
+
+    private final Kind kind;
+    private final BigDecimal price;
+    private final LocalDateTime createdAt;
+    private final long id;
+    private final int offset;
+
+    private BookCursor(Kind kind, BigDecimal price, LocalDateTime createdAt, long id, int offset) {
+        this.kind = kind;
+        this.price = price;
+        this.createdAt = createdAt;
+        this.id = id;
+        this.offset = offset;
+    }
+
+    static BookCursor afterPrice(boolean descending, BigDecimal price, long id) {
+        return new BookCursor(descending ? Kind.PRICE_DESC : Kind.PRICE_ASC, price, null, id, 0);
+    }
+
+    static BookCursor afterCreated(LocalDateTime createdAt, long id) {
+        return new BookCursor(Kind.CREATED, null, createdAt, id, 0);
+    }
+
+    static BookCursor atOffset(int offset) {
+        return new BookCursor(Kind.RANK, null, null, 0, offset);
+    }
+
+    Kind getKind() {
+        return kind;
+    }
+
+    BigDecimal getPrice() {
+        return price;
+    }
+
+    LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getOffset() {
+        return offset;
+    }
+
+    String encode() {
+        String value = switch (kind) {
+            case PRICE_ASC -> "pa|" + price.toPlainString() + "|" + id;
+            case PRICE_DESC -> "pd|" + price.toPlainString() + "|" + id;
+            case CREATED -> "c|" + createdAt + "|" + id;
+            case RANK -> "r|" + offset;
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a token
+     * @return the cursor, or null for no token
+     */
+    static BookCursor decode(String token) {
+        if (token == null) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            BookCursor cursor = switch (parts[0]) {
+                case "pa" -> afterPrice(false, new BigDecimal(parts[1]), Long.parseLong(parts[2]));
+                case "pd" -> afterPrice(true, new BigDecimal(parts[1]), Long.parseLong(parts[2]));
+                case "c" -> afterCreated(LocalDateTime.parse(parts[1]), Long.parseLong(parts[2]));
+                case "r" -> atOffset(Integer.parseInt(parts[1]));
+                default -> null;
+            };
+            if (cursor != null) {
+                return cursor;
+            }
+        } catch (RuntimeException e) {
+            // Fall through to the error below
+        }
+        throw new RuntimeException("Invalid cursor");
+    }
+
+    /**
+     * Check a decoded cursor continues the listing's order
+     * @return the cursor, or null for none
+     */
+    static BookCursor expect(BookCursor cursor, Kind expected) {
+        if (cursor != null && cursor.kind != expected) {
+            throw new RuntimeException("Cursor is for a different sort; start the listing again without it");
+        }
+        return cursor;
+    }
+}
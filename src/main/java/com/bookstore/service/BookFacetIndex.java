@@ -0,0 +1,252 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookFacetsDto;
+import com.bookstore.dto.FacetCountDto;
+import com.bookstore.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Price range, author and availability of every book, in arrays indexed by a dense ordinal per
+ * book, plus the number of books with each value. Facet counts for a result set are summed over
+ * its books; counts for the whole catalog are the kept totals. Memory grows with the number of
+ * books, not with authors times the largest book id.
+ */
+@Component
+public class BookFacetIndex implements BookIndex {
+
+    /**
+     * Lower bounds of the price ranges in cents; the last range is open-ended
+     */
+    private static final long[] PRICE_BOUNDS = {0, 100_000, 250_000, 500_000, 1_000_000};
+    private static final int TOP_AUTHORS = 10;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Facets facets = new Facets();
+    private Facets building;
+    private volatile boolean ready;
+
+    @Override
+    public void startRebuild() {
+        building = new Facets();
+    }
+
+    @Override
+    public void rebuildAdd(Book book) {
+        building.add(book);
+    }
+
+    @Override
+    public void finishRebuild() {
+        lock.writeLock().lock();
+        try {
+            facets = building;
+            building = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        lock.writeLock().lock();
+        try {
+            facets.remove(book.getId());
+            facets.add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookDeleted(Long id) {
+        lock.writeLock().lock();
+        try {
+            facets.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Facet counts over the given books
+     * @param result - ids of the books to count, or null for the whole catalog
+     */
+    public BookFacetsDto count(long[] result) {
+        lock.readLock().lock();
+        try {
+            long[] priceCounts;
+            long[] authorCounts;
+            long available;
+            long unavailable;
+            if (result == null) {
+                priceCounts = facets.booksByBucket.clone();
+                authorCounts = Arrays.stream(facets.booksByAuthor, 0, facets.authorNames.size())
+                        .asLongStream()
+                        .toArray();
+                available = facets.availableBooks;
+                unavailable = facets.unavailableBooks;
+            } else {
+                priceCounts = new long[PRICE_BOUNDS.length];
+                authorCounts = new long[facets.authorNames.size()];
+                available = 0;
+                unavailable = 0;
+                for (long id : result) {
+                    Integer book = facets.ordinals.get(id);
+                    if (book == null) {
+                        continue;
+                    }
+                    priceCounts[facets.bucketOf[book]]++;
+                    authorCounts[facets.authorOf[book]]++;
+                    if (facets.availableOf[book]) {
+                        available++;
+                    } else {
+                        unavailable++;
+                    }
+                }
+            }
+
+            List<FacetCountDto> priceRanges = new ArrayList<>(PRICE_BOUNDS.length);
+            for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+                priceRanges.add(new FacetCountDto(priceLabel(i), priceCounts[i]));
+            }
+            return new BookFacetsDto(priceRanges, topAuthors(authorCounts), available, unavailable);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The authors with the most books, kept in a bounded heap instead of sorting every author
+     */
+    private List<FacetCountDto> topAuthors(long[] authorCounts) {
+        Comparator<FacetCountDto> order = Comparator.comparingLong(FacetCountDto::getCount).reversed()
+                .thenComparing(FacetCountDto::getValue);
+        PriorityQueue<FacetCountDto> top = new PriorityQueue<>(TOP_AUTHORS + 1, order.reversed());
+        for (int author = 0; author < authorCounts.length; author++) {
+            if (authorCounts[author] > 0) {
+                top.add(new FacetCountDto(facets.authorNames.get(author), authorCounts[author]));
+                if (top.size() > TOP_AUTHORS) {
+                    top.poll();
+                }
+            }
+        }
+        List<FacetCountDto> authors = new ArrayList<>(top);
+        authors.sort(order);
+        return authors;
+    }
+
+    private static String priceLabel(int bucket) {
+        String from = String.valueOf(PRICE_BOUNDS[bucket] / 100);
+        return bucket + 1 < PRICE_BOUNDS.length ? from + "-" + PRICE_BOUNDS[bucket + 1] / 100 : from + "+";
+    }
+
+    private static int priceBucket(long cents) {
+        int bucket = 0;
+        while (bucket + 1 < PRICE_BOUNDS.length && cents >= PRICE_BOUNDS[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static String authorKey(String authorName) {
+        return authorName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Facet values by book ordinal and book counts by value. Ordinals of removed books and
+     * authors without books are reused.
+     */
+    private static class Facets {
+        final Map<Long, Integer> ordinals = new HashMap<>();
+        final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+        int nextOrdinal;
+        byte[] bucketOf = new byte[64];
+        int[] authorOf = new int[64];
+        boolean[] availableOf = new boolean[64];
+
+        final Map<String, Integer> authorIds = new HashMap<>();
+        // Display name by author ordinal, null for a free ordinal
+        final List<String> authorNames = new ArrayList<>();
+        final Deque<Integer> freeAuthors = new ArrayDeque<>();
+
+        final long[] booksByBucket = new long[PRICE_BOUNDS.length];
+        int[] booksByAuthor = new int[16];
+        long availableBooks;
+        long unavailableBooks;
+
+        void add(Book book) {
+            int ordinal = freeOrdinals.isEmpty() ? nextOrdinal++ : freeOrdinals.pop();
+            if (ordinal == bucketOf.length) {
+                int capacity = ordinal + (ordinal >> 1);
+                bucketOf = Arrays.copyOf(bucketOf, capacity);
+                authorOf = Arrays.copyOf(authorOf, capacity);
+                availableOf = Arrays.copyOf(availableOf, capacity);
+            }
+            int bucket = priceBucket(BookPriceIndex.toCents(book.getPrice()));
+            int author = authorOrdinal(book.getAuthorName());
+            boolean isAvailable = Boolean.TRUE.equals(book.getAvailable());
+
+            ordinals.put(book.getId(), ordinal);
+            bucketOf[ordinal] = (byte) bucket;
+            authorOf[ordinal] = author;
+            availableOf[ordinal] = isAvailable;
+            booksByBucket[bucket]++;
+            booksByAuthor[author]++;
+            if (isAvailable) {
+                availableBooks++;
+            } else {
+                unavailableBooks++;
+            }
+        }
+
+        void remove(Long id) {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            booksByBucket[bucketOf[ordinal]]--;
+            if (availableOf[ordinal]) {
+                availableBooks--;
+            } else {
+                unavailableBooks--;
+            }
+            int author = authorOf[ordinal];
+            if (--booksByAuthor[author] == 0) {
+                authorIds.remove(authorKey(authorNames.get(author)));
+                authorNames.set(author, null);
+                freeAuthors.push(author);
+            }
+            freeOrdinals.push(ordinal);
+        }
+
+        private int authorOrdinal(String authorName) {
+            String key = authorKey(authorName);
+            Integer author = authorIds.get(key);
+            if (author != null) {
+                return author;
+            }
+            if (freeAuthors.isEmpty()) {
+                author = authorNames.size();
+                authorNames.add(authorName.trim());
+                if (author == booksByAuthor.length) {
+                    booksByAuthor = Arrays.copyOf(booksByAuthor, author + (author >> 1));
+                }
+            } else {
+                author = freeAuthors.pop();
+                authorNames.set(author, authorName.trim());
+            }
+            authorIds.put(key, author);
+            return author;
+        }
+    }
+}
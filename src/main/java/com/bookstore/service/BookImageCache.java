@@ -0,0 +1,171 @@
+package com.bookstore.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bytes of recently served image files, held off-heap in direct buffers so hot covers are sent
+ * without touching the disk or growing the Java heap. Bounded by total bytes, least recently
+ * used first out; files above the entry limit are never cached.
+ */
+@Slf4j
+@Component
+public class BookImageCache implements MeterBinder {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final LinkedHashMap<Path, Image> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    // Bumped on every eviction so loads that started before it are not cached
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // Lookups of files above the entry limit, which are neither hits nor misses
+    private final AtomicLong uncacheable = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BookImageCache(@Value("${bookstore.image-cache.max-bytes:67108864}") long maxBytes,
+                          @Value("${bookstore.image-cache.max-entry-bytes:1048576}") long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes / 2);
+    }
+
+    /**
+     * A file's bytes and attributes, read-through
+     * @return the cached image, or null if the file is too large to cache or cannot be read
+     */
+    public Image get(Path path) {
+        long loadGeneration;
+        synchronized (this) {
+            Image image = entries.get(path);
+            if (image != null) {
+                hits.incrementAndGet();
+                return image;
+            }
+            loadGeneration = generation;
+        }
+
+        Image image;
+        try {
+            image = load(path);
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            log.warn("Failed to cache image {}: {}", path, e.getMessage());
+            return null;
+        }
+        if (image == null) {
+            uncacheable.incrementAndGet();
+            return null;
+        }
+        misses.incrementAndGet();
+        synchronized (this) {
+            if (loadGeneration == generation) {
+                remove(path);
+                entries.put(path, image);
+                usedBytes += image.length();
+                evictOverflow();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Drop a file that is being deleted, replaced or touched
+     */
+    public synchronized void evict(Path path) {
+        generation++;
+        remove(path);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("bookstore.image.cache.hits", hits, AtomicLong::get).register(registry);
+        FunctionCounter.builder("bookstore.image.cache.misses", misses, AtomicLong::get).register(registry);
+        FunctionCounter.builder("bookstore.image.cache.uncacheable", uncacheable, AtomicLong::get).register(registry);
+        FunctionCounter.builder("bookstore.image.cache.evictions", evictions, AtomicLong::get).register(registry);
+        Gauge.builder("bookstore.image.cache.hit.ratio", this, cache -> cache.hitRatio()).register(registry);
+        Gauge.builder("bookstore.image.cache.entries", this, cache -> cache.size()).register(registry);
+        Gauge.builder("bookstore.image.cache.bytes", this, cache -> cache.usedBytes())
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Share of lookups answered from the cache since startup, not counting files too large to cache
+     */
+    public double hitRatio() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private Image load(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (attributes.size() > maxEntryBytes) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect((int) attributes.size());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // Keep reading until the buffer is full or the file ends
+            }
+        }
+        bytes.flip();
+        return new Image(bytes.asReadOnlyBuffer(), attributes.lastModifiedTime().toMillis());
+    }
+
+    private void evictOverflow() {
+        Iterator<Image> eldest = entries.values().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(Path path) {
+        Image removed = entries.remove(path);
+        if (removed != null) {
+            usedBytes -= removed.length();
+        }
+    }
+
+    /**
+     * Cached file content; callers read through {@link #bytes()}, which returns a fresh view
+     */
+    public record Image(ByteBuffer content, long lastModified) {
+
+        public long length() {
+            return content.limit();
+        }
+
+        public ByteBuffer bytes() {
+            return content.duplicate();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.bookstore.service;
+
+import com.bookstore.repository.BookRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Stores uploaded book images and creates their smaller renditions.
+ * Files are named by the SHA-256 of their content, so identical uploads are stored once and
+ * shared by every book whose imagePath names them; a file is deleted with its last reference.
+ * Uploads are written before the transaction that refers to them, so no connection is held
+ * during file I/O. Renditions are resized and released files deleted on a bounded worker pool
+ * once that transaction has completed; until a rendition exists the original is served instead.
+ */
+@Slf4j
+@Service
+public class BookImageService {
+
+    // Prefix of the image paths stored on books, which are also the paths they are served at;
+    // the files themselves are in the configured upload directory
+    public static final String UPLOAD_DIR = "uploads/books/";
+
+    // Content hashes and the random UUIDs of older uploads, with an optional rendition suffix
+    private static final Pattern IMMUTABLE_NAME = Pattern.compile(
+            "([0-9a-f]{64}|[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})(-[a-z]+)?(\\.[a-z0-9]+)?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+
+    /**
+     * Sizes an image can be requested in, each fitting within a square box
+     */
+    public enum Rendition {
+        THUMB("thumb", 200), MEDIUM("medium", 600);
+
+        private final String suffix;
+        private final int maxSize;
+
+        Rendition(String suffix, int maxSize) {
+            this.suffix = suffix;
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * The rendition named by a size parameter, or null for the original
+         */
+        public static Rendition of(String size) {
+            if (size == null || size.isBlank() || size.equalsIgnoreCase("original")) {
+                return null;
+            }
+            for (Rendition rendition : values()) {
+                if (rendition.suffix.equalsIgnoreCase(size)) {
+                    return rendition;
+                }
+            }
+            throw new RuntimeException("Unknown image size: " + size);
+        }
+    }
+
+    private final BookRepository bookRepository;
+    private final BookImageCache bookImageCache;
+    private final ThreadPoolExecutor workers;
+    private final long orphanAgeMs;
+    private final Path uploadDir;
+    private final Map<String, Staging> staging = new HashMap<>();
+
+    public BookImageService(BookRepository bookRepository,
+                            BookImageCache bookImageCache,
+                            @Value("${bookstore.images.workers:2}") int workerCount,
+                            @Value("${bookstore.images.queue-capacity:100}") int queueCapacity,
+                            @Value("${bookstore.images.orphan-age-ms:3600000}") long orphanAgeMs,
+                            @Value("${bookstore.images.upload-dir:uploads/books}") String uploadDir) {
+        this.bookRepository = bookRepository;
+        this.bookImageCache = bookImageCache;
+        this.orphanAgeMs = orphanAgeMs;
+        this.uploadDir = Paths.get(uploadDir);
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "book-image-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Store an uploaded image under the SHA-256 of its content, before the transaction that
+     * refers to it starts; content that is already stored is kept and shared. The transaction
+     * must then {@link #attach} the returned path.
+     * @return image path of the stored original
+     */
+    public String stage(MultipartFile file) {
+        Path temp = null;
+        try {
+            // Create upload directory if it doesn't exist
+            if (!Files.exists(uploadDir)) {
+                Files.createDirectories(uploadDir);
+            }
+            
+            // Hash while copying, so the upload is read only once
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            temp = Files.createTempFile(uploadDir, "upload-", ".tmp");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String filename = HexFormat.of().formatHex(digest.digest()) + extensionOf(file.getOriginalFilename());
+            String imagePath = UPLOAD_DIR + filename;
+            
+            // Also restarts the sweeper's grace period for content that is already stored
+            synchronized (staging) {
+                staging.computeIfAbsent(imagePath, path -> new Staging()).add();
+            }
+            Path filePath = uploadDir.resolve(filename);
+            if (!Files.exists(filePath)) {
+                Files.move(temp, filePath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return imagePath;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to save image: " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    /**
+     * Settle a staged image when the current transaction completes: queue its renditions
+     * after a commit, or release it after a rollback
+     */
+    public void attach(String imagePath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            unstage(imagePath);
+            queueRenditions(imagePath);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unstage(imagePath);
+                if (status == STATUS_COMMITTED) {
+                    queueRenditions(imagePath);
+                } else {
+                    queueRelease(imagePath);
+                }
+            }
+        });
+    }
+
+    /**
+     * Delete an image and its renditions in the background once the current transaction has
+     * committed, unless a book still refers to it or an upload of it is in flight
+     */
+    public void release(String imagePath) {
+        AfterCommit.run(() -> queueRelease(imagePath));
+    }
+
+    /**
+     * Delete uploaded files that no book refers to and that were neither written nor uploaded
+     * again recently: images of transactions that rolled back before their cleanup ran,
+     * renditions of deleted images, and temp files of interrupted uploads
+     */
+    @Scheduled(fixedDelayString = "${bookstore.images.sweep-interval-ms:3600000}",
+               initialDelayString = "${bookstore.images.sweep-interval-ms:3600000}")
+    public void sweepOrphans() {
+        if (!Files.isDirectory(uploadDir)) {
+            return;
+        }
+        // Files written or uploaded after this point are younger than the cutoff and kept
+        long cutoff = System.currentTimeMillis() - orphanAgeMs;
+        synchronized (staging) {
+            staging.values().removeIf(entry -> entry.releases == 0 && entry.lastStaged <= cutoff);
+        }
+        Set<String> kept = new HashSet<>();
+        for (String imagePath : bookRepository.findAllImagePaths()) {
+            String normalized = normalize(imagePath);
+            kept.add(normalized);
+            for (Rendition rendition : Rendition.values()) {
+                kept.add(renditionPath(normalized, rendition));
+            }
+        }
+        
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String path = UPLOAD_DIR + file.getFileName();
+                if (kept.contains(path) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                // Like deleteIfUnused, so a concurrent upload of the same content is not lost
+                synchronized (staging) {
+                    if (recentlyStaged(path) || Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                        continue;
+                    }
+                    delete(file);
+                }
+                deleted++;
+            }
+        } catch (IOException e) {
+            log.error("Failed to sweep orphaned images", e);
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} orphaned image files", deleted);
+        }
+    }
+
+    /**
+     * Whether an uploaded file is named by its content hash or a random UUID, so the bytes
+     * under its name never change
+     */
+    public static boolean isImmutable(String filename) {
+        return IMMUTABLE_NAME.matcher(filename).matches();
+    }
+
+    /**
+     * File to serve for an uploaded image in the requested size, falling back to the original
+     * while the rendition has not been created (or was not needed because the original is small)
+     * @param filename - name of the original in the upload directory
+     * @return the file, or null if there is no such image
+     */
+    public Path resolve(String filename, Rendition rendition) {
+        if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
+            return null;
+        }
+        String imagePath = UPLOAD_DIR + filename;
+        if (rendition != null) {
+            Path resized = fileOf(renditionPath(imagePath, rendition));
+            if (Files.isRegularFile(resized)) {
+                return resized;
+            }
+        }
+        Path original = fileOf(imagePath);
+        return Files.isRegularFile(original) ? original : null;
+    }
+
+    /**
+     * Path of an image's rendition: the original's name with the size appended,
+     * PNG for originals that may be transparent and JPEG for everything else
+     */
+    public static String renditionPath(String imagePath, Rendition rendition) {
+        int dot = imagePath.lastIndexOf('.');
+        boolean hasExtension = dot > imagePath.lastIndexOf('/');
+        String base = hasExtension ? imagePath.substring(0, dot) : imagePath;
+        return base + "-" + rendition.suffix + "." + formatOf(imagePath);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void queueRelease(String imagePath) {
+        try {
+            workers.execute(() -> deleteIfUnused(imagePath));
+        } catch (RejectedExecutionException e) {
+            log.warn("Image worker queue full, leaving {} to the orphan sweep", imagePath);
+        }
+    }
+
+    /**
+     * Marks the image's staging entry as being released, looks for references without holding
+     * the staging lock, then deletes under the lock only if no upload was staged meanwhile.
+     * A {@link #stage} of the same content registers itself under that lock before it looks for
+     * the file, so it either keeps the file or writes it again after the delete.
+     */
+    private void deleteIfUnused(String imagePath) {
+        Staging entry;
+        long stages;
+        synchronized (staging) {
+            if (isStaging(imagePath)) {
+                return;
+            }
+            entry = staging.computeIfAbsent(imagePath, path -> new Staging());
+            entry.releases++;
+            stages = entry.stages;
+        }
+        boolean used = true;
+        try {
+            used = bookRepository.countByImagePath(imagePath) > 0;
+        } catch (RuntimeException e) {
+            log.error("Failed to release image {}", imagePath, e);
+        } finally {
+            synchronized (staging) {
+                entry.releases--;
+                boolean deleting = !used && entry.stages == stages;
+                if (deleting) {
+                    delete(fileOf(imagePath));
+                    for (Rendition rendition : Rendition.values()) {
+                        delete(fileOf(renditionPath(imagePath, rendition)));
+                    }
+                }
+                if (entry.releases == 0 && entry.count == 0 && (deleting || entry.stages == 0)) {
+                    staging.remove(imagePath);
+                }
+            }
+        }
+    }
+
+    private void unstage(String imagePath) {
+        synchronized (staging) {
+            Staging entry = staging.get(imagePath);
+            if (entry != null) {
+                entry.remove();
+            }
+        }
+    }
+
+    /**
+     * Whether an upload of this image is waiting for its transaction; uploads whose transaction
+     * never started stop counting after the orphan age
+     */
+    private boolean isStaging(String imagePath) {
+        synchronized (staging) {
+            Staging entry = staging.get(imagePath);
+            return entry != null && entry.count > 0 && System.currentTimeMillis() - entry.lastStaged < orphanAgeMs;
+        }
+    }
+
+    /**
+     * Whether this image was uploaded within the orphan age, which keeps it from the sweep even
+     * when a book started referring to it after the sweep read the references
+     */
+    private boolean recentlyStaged(String imagePath) {
+        synchronized (staging) {
+            Staging entry = staging.get(imagePath);
+            return entry != null && System.currentTimeMillis() - entry.lastStaged < orphanAgeMs;
+        }
+    }
+
+    private void queueRenditions(String imagePath) {
+        try {
+            workers.execute(() -> createRenditions(imagePath));
+        } catch (RejectedExecutionException e) {
+            // The original keeps being served; the next upload of this book gets another chance
+            log.warn("Image worker queue full, no renditions for {}", imagePath);
+        }
+    }
+
+    private void createRenditions(String imagePath) {
+        long start = System.currentTimeMillis();
+        try {
+            BufferedImage original = null;
+            for (Rendition rendition : Rendition.values()) {
+                // Renditions of content uploaded before are already there
+                if (!Files.exists(fileOf(renditionPath(imagePath, rendition)))) {
+                    if (original == null) {
+                        original = ImageIO.read(fileOf(imagePath).toFile());
+                        if (original == null) {
+                            log.info("No renditions for {}: not a format ImageIO can read", imagePath);
+                            return;
+                        }
+                    }
+                    write(original, imagePath, rendition);
+                }
+            }
+            log.debug("Renditions of {} created in {} ms", imagePath, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to create renditions of {}", imagePath, e);
+        }
+    }
+
+    /**
+     * Scale the image to fit the rendition's box and write it next to the original; an image
+     * that already fits gets no rendition and is served as the original
+     */
+    private void write(BufferedImage original, String imagePath, Rendition rendition) throws IOException {
+        int width = original.getWidth();
+        int height = original.getHeight();
+        if (width <= rendition.maxSize && height <= rendition.maxSize) {
+            return;
+        }
+        double scale = Math.min((double) rendition.maxSize / width, (double) rendition.maxSize / height);
+        int scaledWidth = Math.max(1, (int) Math.round(width * scale));
+        int scaledHeight = Math.max(1, (int) Math.round(height * scale));
+
+        String format = formatOf(imagePath);
+        boolean png = format.equals("png");
+        BufferedImage scaled = new BufferedImage(scaledWidth, scaledHeight,
+                png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!png) {
+                // JPEG has no alpha channel
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, scaledWidth, scaledHeight);
+            }
+            graphics.drawImage(original, 0, 0, scaledWidth, scaledHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        // Written under a temporary name so a half-written file is never served
+        Path target = fileOf(renditionPath(imagePath, rendition));
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        if (!ImageIO.write(scaled, format, temp.toFile())) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Lower-case extension of the uploaded file's name including the dot, or empty if it has
+     * none that is safe to use in a file name
+     */
+    private static String extensionOf(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.')).toLowerCase(Locale.ROOT);
+        return SAFE_EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    /**
+     * File of an image path in the upload directory
+     */
+    private Path fileOf(String imagePath) {
+        return uploadDir.resolve(imagePath.substring(imagePath.lastIndexOf('/') + 1));
+    }
+
+    private void delete(Path path) {
+        bookImageCache.evict(path);
+        deleteQuietly(path);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Log error but don't throw exception
+            log.warn("Failed to delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Image path in the form the upload directory listing produces, without a leading slash or ./
+     */
+    private static String normalize(String imagePath) {
+        String path = imagePath.replace('\\', '/');
+        while (path.startsWith("/") || path.startsWith("./")) {
+            path = path.substring(path.startsWith("/") ? 1 : 2);
+        }
+        return path;
+    }
+
+    private static String formatOf(String imagePath) {
+        String lower = imagePath.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".png") || lower.endsWith(".gif") ? "png" : "jpg";
+    }
+
+    /**
+     * Uploads of one image: how many wait for their transactions and when the last one was
+     * staged, which starts the image's grace period against the sweep. Kept until that period
+     * is over and no release is checking the image's references.
+     */
+    private static final class Staging {
+        int count;
+        long lastStaged;
+        // Uploads ever added, for a release to tell whether one came in while it looked
+        long stages;
+        int releases;
+
+        void add() {
+            count++;
+            stages++;
+            lastStaged = System.currentTimeMillis();
+        }
+
+        void remove() {
+            if (count > 0) {
+                count--;
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookDto;
+import com.bookstore.model.Author;
+import com.bookstore.model.BookImportJob;
+import com.bookstore.repository.BookImportJobRepository;
+import com.bookstore.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk catalog import from CSV or JSON Lines.
+ * Rows are read one at a time from the stream and inserted with JDBC batches, one transaction
+ * per batch. Each transaction also records the job's progress, so a failed import resumes
+ * right after its last committed batch.
+ */
+@Slf4j
+@Service
+public class BookImportService {
+    
+    private static final String INSERT_CONTENT = "insert into book_contents (description) values (?)";
+    private static final String INSERT_BOOK = "insert into books (book_id, book_name, price, author_name, author_id, " +
+                                              "content_id, available, created_at, updated_at) " +
+                                              "values (?, ?, ?, ?, ?, ?, true, ?, ?)";
+    private static final List<String> REQUIRED_COLUMNS = List.of("bookid", "bookname", "price", "authorname");
+    private static final int MAX_ERRORS_LENGTH = 4000;
+    private static final int MAX_FAILURE_LENGTH = 1000;
+    
+    private final BookRepository bookRepository;
+    private final BookImportJobRepository bookImportJobRepository;
+    private final BookIndexManager bookIndexManager;
+    private final BookCatalogCache bookCatalogCache;
+    private final CatalogVersion catalogVersion;
+    private final CatalogSnapshot catalogSnapshot;
+    private final AuthorService authorService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long staleAfterMs;
+    
+    public BookImportService(BookRepository bookRepository,
+                             BookImportJobRepository bookImportJobRepository,
+                             BookIndexManager bookIndexManager,
+                             BookCatalogCache bookCatalogCache,
+                             CatalogVersion catalogVersion,
+                             CatalogSnapshot catalogSnapshot,
+                             AuthorService authorService,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             Validator validator,
+                             ObjectMapper objectMapper,
+                             @Value("${bookstore.import.batch-size:1000}") int batchSize,
+                             @Value("${bookstore.import.stale-after-ms:600000}") long staleAfterMs) {
+        this.bookRepository = bookRepository;
+        this.bookImportJobRepository = bookImportJobRepository;
+        this.bookIndexManager = bookIndexManager;
+        this.bookCatalogCache = bookCatalogCache;
+        this.catalogVersion = catalogVersion;
+        this.catalogSnapshot = catalogSnapshot;
+        this.authorService = authorService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.staleAfterMs = staleAfterMs;
+    }
+    
+    /**
+     * Import books from a stream
+     * Invalid rows and rows whose bookId already exists are counted and skipped; the import goes on.
+     * Reading or database errors stop it and leave the job FAILED.
+     * @param format - "csv" (with a header row naming the columns) or "jsonl" (one book object per line)
+     * @param resumeJobId - a failed or interrupted job to continue from the same file, or null to start a new one
+     */
+    public BookImportJob importBooks(InputStream input, String format, Long resumeJobId) {
+        BookImportJob job = startJob(format, resumeJobId);
+        long importedBefore = job.getImported();
+        Set<String> seenBookIds = new HashSet<>();
+        long start = System.currentTimeMillis();
+        try (RowReader reader = "jsonl".equals(format) ? new JsonLinesReader(input, objectMapper) : new CsvReader(input)) {
+            List<Row> batch = new ArrayList<>(batchSize);
+            Row row;
+            while ((row = reader.next()) != null) {
+                // Rows committed before the job failed
+                if (row.number() <= job.getLastCommittedRow()) {
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    job = commitBatch(job.getId(), batch, seenBookIds);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                job = commitBatch(job.getId(), batch, seenBookIds);
+            }
+            job.setStatus(BookImportJob.Status.COMPLETED);
+            job = bookImportJobRepository.save(job);
+            log.info("Book import {} completed in {} ms: {} imported, {} duplicates, {} rejected", job.getId(),
+                    System.currentTimeMillis() - start, job.getImported(), job.getDuplicates(), job.getRejected());
+        } catch (IOException | RuntimeException e) {
+            log.error("Book import {} failed after row {}", job.getId(), job.getLastCommittedRow(), e);
+            job.setStatus(BookImportJob.Status.FAILED);
+            job.setFailureMessage(truncate(String.valueOf(e.getMessage()), MAX_FAILURE_LENGTH));
+            job = bookImportJobRepository.save(job);
+        } finally {
+            if (job.getImported() > importedBefore) {
+                bookCatalogCache.evictAll();
+                catalogVersion.catalogChanged();
+                catalogSnapshot.invalidate();
+                bookIndexManager.rebuildInBackground();
+            }
+        }
+        return job;
+    }
+    
+    /**
+     * Get import progress
+     */
+    public BookImportJob getJob(Long id) {
+        return bookImportJobRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Import not found with id: " + id));
+    }
+    
+    private BookImportJob startJob(String format, Long resumeJobId) {
+        if (!"csv".equals(format) && !"jsonl".equals(format)) {
+            throw new RuntimeException("Unsupported import format: " + format);
+        }
+        if (resumeJobId == null) {
+            BookImportJob job = new BookImportJob();
+            job.setFormat(format);
+            return bookImportJobRepository.save(job);
+        }
+        
+        BookImportJob job = getJob(resumeJobId);
+        if (job.getStatus() == BookImportJob.Status.COMPLETED) {
+            throw new RuntimeException("Import " + resumeJobId + " is already completed");
+        }
+        if (!job.getFormat().equals(format)) {
+            throw new RuntimeException("Import " + resumeJobId + " was started from a " + job.getFormat() + " file");
+        }
+        // Claimed in one conditional update, so two resumes, or a resume and the import still
+        // inserting, never work on the same job; a running job counts as interrupted once it has
+        // saved no progress for the stale time
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status -> bookImportJobRepository.claimForResume(
+                resumeJobId, now.minus(staleAfterMs, ChronoUnit.MILLIS), now));
+        if (claimed == null || claimed == 0) {
+            throw new RuntimeException("Import " + resumeJobId + " is still running");
+        }
+        return getJob(resumeJobId);
+    }
+    
+    /**
+     * Validate and insert one batch, and record the job's progress in the same transaction
+     */
+    private BookImportJob commitBatch(Long jobId, List<Row> batch, Set<String> seenBookIds) {
+        return transactionTemplate.execute(status -> {
+            BookImportJob job = getJob(jobId);
+            List<String> errors = new ArrayList<>();
+            List<BookDto> valid = new ArrayList<>(batch.size());
+            for (Row row : batch) {
+                String error = row.error() != null ? row.error() : validate(row.book());
+                if (error != null) {
+                    errors.add("row " + row.number() + ": " + error);
+                } else {
+                    valid.add(row.book());
+                }
+            }
+            
+            // One query for the whole batch instead of existsByBookId per row
+            Set<String> existing = valid.isEmpty() ? Set.of() : new HashSet<>(bookRepository.findExistingBookIds(
+                    valid.stream().map(BookDto::getBookId).collect(Collectors.toList())));
+            List<BookDto> books = new ArrayList<>(valid.size());
+            for (BookDto book : valid) {
+                if (!existing.contains(book.getBookId()) && seenBookIds.add(book.getBookId())) {
+                    books.add(book);
+                }
+            }
+            
+            Map<String, Long> authorIds = authorService.resolveAll(
+                    books.stream().map(BookDto::getAuthorName).collect(Collectors.toList()));
+            Map<String, Long> contentIds = insertContents(books);
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.batchUpdate(INSERT_BOOK, books, books.size(), (ps, book) -> {
+                Long contentId = contentIds.get(book.getBookId());
+                ps.setString(1, book.getBookId());
+                ps.setString(2, book.getBookName());
+                ps.setBigDecimal(3, book.getPrice());
+                ps.setString(4, book.getAuthorName());
+                ps.setLong(5, authorIds.get(Author.keyOf(book.getAuthorName())));
+                if (contentId != null) {
+                    ps.setLong(6, contentId);
+                } else {
+                    ps.setNull(6, Types.BIGINT);
+                }
+                ps.setObject(7, now);
+                ps.setObject(8, now);
+            });
+            
+            job.setLastCommittedRow(batch.get(batch.size() - 1).number());
+            job.setImported(job.getImported() + books.size());
+            job.setDuplicates(job.getDuplicates() + valid.size() - books.size());
+            job.setRejected(job.getRejected() + errors.size());
+            job.setErrors(appendErrors(job.getErrors(), errors));
+            return bookImportJobRepository.save(job);
+        });
+    }
+    
+    /**
+     * Batch insert the descriptions of the books that have one
+     * @return generated content id by bookId
+     */
+    private Map<String, Long> insertContents(List<BookDto> books) {
+        List<BookDto> described = books.stream()
+                .filter(book -> book.getDescription() != null)
+                .collect(Collectors.toList());
+        Map<String, Long> contentIds = new HashMap<>();
+        if (described.isEmpty()) {
+            return contentIds;
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_CONTENT, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, described.get(i).getDescription());
+                    }
+                    
+                    @Override
+                    public int getBatchSize() {
+                        return described.size();
+                    }
+                }, keys);
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        for (int i = 0; i < described.size(); i++) {
+            Number id = (Number) keyList.get(i).values().iterator().next();
+            contentIds.put(described.get(i).getBookId(), id.longValue());
+        }
+        return contentIds;
+    }
+    
+    private String validate(BookDto book) {
+        Set<ConstraintViolation<BookDto>> violations = validator.validate(book);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+    
+    /**
+     * Keep the first errors of the import, up to the size of the errors column
+     */
+    private static String appendErrors(String current, List<String> errors) {
+        StringBuilder text = new StringBuilder(current != null ? current : "");
+        for (String error : errors) {
+            if (text.length() + error.length() + 1 > MAX_ERRORS_LENGTH) {
+                break;
+            }
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(error);
+        }
+        return text.length() > 0 ? text.toString() : null;
+    }
+    
+    private static String truncate(String value, int maxLength) {
+        return value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+    
+    /**
+     * One data row: a parsed book, or the reason it could not be parsed
+     */
+    private record Row(long number, BookDto book, String error) {
+    }
+    
+    private interface RowReader extends Closeable {
+        /**
+         * The next non-blank row, or null at the end of the stream
+         */
+        Row next() throws IOException;
+    }
+    
+    /**
+     * CSV with a header row naming the columns
+     */
+    private static final class CsvReader implements RowReader {
+        private final CsvParser parser;
+        private final Map<String, Integer> columns;
+        private long number;
+        
+        CsvReader(InputStream input) throws IOException {
+            parser = new CsvParser(input);
+            columns = parser.readHeader(REQUIRED_COLUMNS);
+        }
+        
+        @Override
+        public Row next() throws IOException {
+            List<String> fields = parser.next();
+            if (fields == null) {
+                return null;
+            }
+            number++;
+            
+            String price = CsvParser.field(fields, columns, "price");
+            BookDto book = new BookDto();
+            book.setBookId(CsvParser.field(fields, columns, "bookid"));
+            book.setBookName(CsvParser.field(fields, columns, "bookname"));
+            book.setDescription(CsvParser.field(fields, columns, "description"));
+            book.setAuthorName(CsvParser.field(fields, columns, "authorname"));
+            try {
+                book.setPrice(price != null ? new BigDecimal(price.trim()) : null);
+            } catch (NumberFormatException e) {
+                return new Row(number, null, "Invalid price: " + price);
+            }
+            return new Row(number, book, null);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+    
+    /**
+     * One JSON object per line with the same properties as BookDto
+     */
+    private static final class JsonLinesReader implements RowReader {
+        private final BufferedReader reader;
+        private final ObjectMapper objectMapper;
+        private long number;
+        
+        JsonLinesReader(InputStream input, ObjectMapper objectMapper) {
+            this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            this.objectMapper = objectMapper;
+        }
+        
+        @Override
+        public Row next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            number++;
+            
+            try {
+                return new Row(number, objectMapper.readValue(line, BookDto.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(number, null, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
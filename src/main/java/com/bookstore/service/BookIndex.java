@@ -0,0 +1,48 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+
+/**
+ * In-memory structure derived from the book catalog.
+ * Implementations are kept up to date by {@link BookIndexManager}.
+ */
+public interface BookIndex {
+
+    /**
+     * Start building a fresh copy of the index. The current copy keeps serving until
+     * {@link #finishRebuild()} is called.
+     */
+    void startRebuild();
+
+    /**
+     * Add a book to the copy being built
+     */
+    void rebuildAdd(Book book);
+
+    /**
+     * Swap the freshly built copy in
+     */
+    void finishRebuild();
+
+    /**
+     * A book was added or changed
+     */
+    void bookSaved(Book book);
+
+    /**
+     * A book was removed
+     */
+    void bookDeleted(Long id);
+
+    /**
+     * Whether the index has been built at least once and can answer queries
+     */
+    boolean isReady();
+
+    /**
+     * Whether the index reads book descriptions, which the catalog snapshot does not hold
+     */
+    default boolean needsContent() {
+        return false;
+    }
+}
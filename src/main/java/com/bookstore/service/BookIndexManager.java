@@ -0,0 +1,190 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookSummary;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Builds every {@link BookIndex} from the database and feeds them catalog changes
+ * once the surrounding transaction has committed. After a restart, indexes that need no
+ * descriptions are first built from the catalog snapshot, so they answer right away.
+ * An {@link IndexesRebuilt} event is published whenever freshly built indexes were swapped in.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookIndexManager {
+
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+    private final List<BookIndex> indexes;
+    private final CatalogSnapshot catalogSnapshot;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Object lock = new Object();
+    private boolean rebuilding;
+    // Set when a rebuild is asked for while one is running, which may miss the change behind it
+    private boolean rebuildAgain;
+    private final List<Runnable> pendingChanges = new ArrayList<>();
+
+    /**
+     * Build the indexes in the background once the application is up, from the catalog snapshot
+     * first where it can serve. Until an index is built, its queries fall back to the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(() -> rebuild(true), "book-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Rebuild the indexes on a background thread, e.g. after a bulk change
+     */
+    public void rebuildInBackground() {
+        Thread thread = new Thread(this::rebuild, "book-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Rebuild all indexes from the books table, reading it in pages of ids
+     */
+    public void rebuild() {
+        rebuild(false);
+    }
+
+    private void rebuild(boolean warmFromSnapshot) {
+        synchronized (lock) {
+            if (rebuilding) {
+                rebuildAgain = true;
+                return;
+            }
+            rebuilding = true;
+        }
+        long start = System.currentTimeMillis();
+        long count = 0;
+        try {
+            if (warmFromSnapshot) {
+                warmFromSnapshot();
+            }
+            indexes.forEach(BookIndex::startRebuild);
+            long lastId = 0;
+            List<Book> page;
+            do {
+                page = bookRepository.findWithContentAfter(lastId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                for (Book book : page) {
+                    indexes.forEach(index -> index.rebuildAdd(book));
+                    lastId = book.getId();
+                }
+                count += page.size();
+            } while (page.size() == REBUILD_PAGE_SIZE);
+            indexes.forEach(BookIndex::finishRebuild);
+            eventPublisher.publishEvent(new IndexesRebuilt());
+            log.info("Book indexes rebuilt with {} books in {} ms", count, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild book indexes", e);
+        } finally {
+            List<Runnable> changes;
+            synchronized (lock) {
+                rebuilding = false;
+                changes = new ArrayList<>(pendingChanges);
+                pendingChanges.clear();
+            }
+            // Replay changes that committed while the rebuild was reading the table
+            changes.forEach(Runnable::run);
+        }
+        boolean again;
+        synchronized (lock) {
+            again = rebuildAgain;
+            rebuildAgain = false;
+        }
+        if (again) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Build the indexes that need no descriptions from the snapshot's listing. Changes made
+     * meanwhile are held back like during any rebuild and applied after the one that follows.
+     */
+    private void warmFromSnapshot() {
+        List<BookSummary> books = catalogSnapshot.readAll(false);
+        if (books == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<BookIndex> warmed = indexes.stream()
+                .filter(index -> !index.needsContent())
+                .collect(Collectors.toList());
+        try {
+            warmed.forEach(BookIndex::startRebuild);
+            for (BookSummary summary : books) {
+                Book book = toBook(summary);
+                warmed.forEach(index -> index.rebuildAdd(book));
+            }
+            warmed.forEach(BookIndex::finishRebuild);
+            eventPublisher.publishEvent(new IndexesRebuilt());
+            log.info("{} book indexes built from the catalog snapshot with {} books in {} ms",
+                    warmed.size(), books.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Failed to build book indexes from the catalog snapshot", e);
+        }
+    }
+
+    private static Book toBook(BookSummary summary) {
+        Book book = new Book();
+        book.setId(summary.id());
+        book.setBookId(summary.bookId());
+        book.setBookName(summary.bookName());
+        book.setPrice(summary.price());
+        book.setAuthorName(summary.authorName());
+        book.setImagePath(summary.imagePath());
+        book.setAvailable(summary.available());
+        book.setCreatedAt(summary.createdAt());
+        book.setUpdatedAt(summary.updatedAt());
+        return book;
+    }
+
+    /**
+     * Notify the indexes that a book was added or changed
+     */
+    public void bookSaved(Book book) {
+        AfterCommit.run(() -> apply(() -> indexes.forEach(index -> index.bookSaved(book))));
+    }
+
+    /**
+     * Notify the indexes that a book was removed
+     */
+    public void bookDeleted(Long id) {
+        AfterCommit.run(() -> apply(() -> indexes.forEach(index -> index.bookDeleted(id))));
+    }
+
+    private void apply(Runnable change) {
+        synchronized (lock) {
+            if (rebuilding) {
+                pendingChanges.add(change);
+                return;
+            }
+        }
+        change.run();
+    }
+
+    /**
+     * Freshly built indexes were swapped in, so listings served from them may have changed
+     */
+    public record IndexesRebuilt() {
+    }
+}
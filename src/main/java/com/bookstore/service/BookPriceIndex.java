@@ -0,0 +1,292 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Books ordered by (price, id), kept as parallel primitive arrays of price in cents and book id.
+ * Sorting and price-filtering a set of ids is a scan over the arrays; nothing is boxed or
+ * compared as BigDecimal per request. Filters are {@link BitSet}s over dense slot numbers the
+ * index gives each book, so their size follows the number of books rather than the largest id.
+ */
+@Component
+public class BookPriceIndex implements BookIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long[] prices = new long[0];
+    private long[] ids = new long[0];
+    // Filter bit of the book at each position
+    private int[] slots = new int[0];
+    private int size;
+    // Current price of every indexed book, to find its position when it changes
+    private Map<Long, Long> priceById = new HashMap<>();
+    private Map<Long, Integer> slotById = new HashMap<>();
+    // Slots of deleted books are not reused until the next rebuild
+    private int nextSlot;
+    private Map<Long, Long> building;
+    private volatile boolean ready;
+
+    @Override
+    public void startRebuild() {
+        building = new HashMap<>();
+    }
+
+    @Override
+    public void rebuildAdd(Book book) {
+        building.put(book.getId(), toCents(book.getPrice()));
+    }
+
+    @Override
+    public void finishRebuild() {
+        int count = building.size();
+        long[] newIds = new long[count];
+        long[] newPrices = new long[count];
+        int[] newSlots = new int[count];
+        Map<Long, Integer> newSlotById = new HashMap<>();
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : building.entrySet()) {
+            newIds[i] = entry.getKey();
+            newPrices[i] = entry.getValue();
+            newSlots[i] = i;
+            newSlotById.put(entry.getKey(), i);
+            i++;
+        }
+        sort(newPrices, newIds, newSlots, 0, count - 1);
+
+        lock.writeLock().lock();
+        try {
+            prices = newPrices;
+            ids = newIds;
+            slots = newSlots;
+            size = count;
+            priceById = building;
+            slotById = newSlotById;
+            nextSlot = count;
+            building = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        long cents = toCents(book.getPrice());
+        lock.writeLock().lock();
+        try {
+            Long current = priceById.get(book.getId());
+            if (current != null && current == cents) {
+                return;
+            }
+            if (current != null) {
+                removeAt(lowerBound(current, book.getId()));
+            }
+            int slot = slotById.computeIfAbsent(book.getId(), id -> nextSlot++);
+            insertAt(lowerBound(cents, book.getId()), cents, book.getId(), slot);
+            priceById.put(book.getId(), cents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookDeleted(Long id) {
+        lock.writeLock().lock();
+        try {
+            Long current = priceById.remove(id);
+            slotById.remove(id);
+            if (current != null) {
+                removeAt(lowerBound(current, id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Ids ordered by price within [minCents, maxCents]
+     * @param filter - only books whose slot is set, from {@link #filterOf}, or null for every book
+     * @param afterCents - price of the previous page's last book, ignored when afterId is negative
+     * @param afterId - id of the previous page's last book, or -1 to start from the first book
+     * @param limit - maximum number of ids to return
+     */
+    public long[] sorted(BitSet filter, boolean descending, long minCents, long maxCents,
+                         long afterCents, long afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = lowerBound(minCents, Long.MIN_VALUE);
+            int to = lowerBound(maxCents, Long.MAX_VALUE);
+            if (afterId >= 0) {
+                int after = lowerBound(afterCents, afterId);
+                if (descending) {
+                    to = Math.min(to, after);
+                } else {
+                    boolean onCursor = after < size && prices[after] == afterCents && ids[after] == afterId;
+                    from = Math.max(from, onCursor ? after + 1 : after);
+                }
+            }
+
+            long[] result = new long[Math.min(limit, Math.max(0, to - from))];
+            int count = 0;
+            if (descending) {
+                for (int i = to - 1; i >= from && count < result.length; i--) {
+                    if (filter == null || filter.get(slots[i])) {
+                        result[count++] = ids[i];
+                    }
+                }
+            } else {
+                for (int i = from; i < to && count < result.length; i++) {
+                    if (filter == null || filter.get(slots[i])) {
+                        result[count++] = ids[i];
+                    }
+                }
+            }
+            return count == result.length ? result : Arrays.copyOf(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The given ids that are priced within [minCents, maxCents], in their original order
+     */
+    public long[] retainInRange(long[] bookIds, long minCents, long maxCents) {
+        long[] kept = new long[bookIds.length];
+        int count = 0;
+        lock.readLock().lock();
+        try {
+            for (long id : bookIds) {
+                Long cents = priceById.get(id);
+                if (cents != null && cents >= minCents && cents <= maxCents) {
+                    kept[count++] = id;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /**
+     * Filter for {@link #sorted} with the slot of each given book set; ids that are not indexed
+     * are left out
+     */
+    public BitSet filterOf(long[] bookIds) {
+        BitSet bits = new BitSet();
+        lock.readLock().lock();
+        try {
+            for (long id : bookIds) {
+                Integer slot = slotById.get(id);
+                if (slot != null) {
+                    bits.set(slot);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return bits;
+    }
+
+    /**
+     * Price in whole cents, rounding half up beyond two decimals
+     */
+    public static long toCents(BigDecimal price) {
+        return price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * First slot whose (price, id) is not less than the given pair
+     */
+    private int lowerBound(long cents, long id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < cents || (prices[mid] == cents && ids[mid] < id)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void insertAt(int index, long cents, long id, int slot) {
+        if (size == prices.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            prices = Arrays.copyOf(prices, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+        }
+        System.arraycopy(prices, index, prices, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        System.arraycopy(slots, index, slots, index + 1, size - index);
+        prices[index] = cents;
+        ids[index] = id;
+        slots[index] = slot;
+        size++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(prices, index + 1, prices, index, size - index - 1);
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Quicksort of the parallel arrays by (price, id)
+     */
+    private static void sort(long[] prices, long[] ids, int[] slots, int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long pivotPrice = prices[mid];
+            long pivotId = ids[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (prices[i] < pivotPrice || (prices[i] == pivotPrice && ids[i] < pivotId)) {
+                    i++;
+                }
+                while (prices[j] > pivotPrice || (prices[j] == pivotPrice && ids[j] > pivotId)) {
+                    j--;
+                }
+                if (i <= j) {
+                    long price = prices[i];
+                    prices[i] = prices[j];
+                    prices[j] = price;
+                    long id = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = id;
+                    int slot = slots[i];
+                    slots[i] = slots[j];
+                    slots[j] = slot;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half to bound stack depth
+            if (j - low < high - i) {
+                sort(prices, ids, slots, low, j);
+                low = i;
+            } else {
+                sort(prices, ids, slots, i, high);
+                high = j;
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tokenized inverted index over book name, author name and description.
+ * Every query term must match (exactly or as a prefix of an indexed term) in at least
+ * one of the searched fields; matches are ranked by field weight.
+ * Fuzzy searches also accept indexed terms within a small edit distance, found through
+ * trigram postings over the term vocabulary.
+ */
+@Component
+public class BookSearchIndex implements BookIndex {
+
+    /**
+     * Indexed fields and their ranking weight
+     */
+    public enum Field {
+        NAME(3), AUTHOR(2), DESCRIPTION(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final long[] NO_IDS = new long[0];
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    // Terms shorter than this are only matched exactly or by prefix
+    private static final int MIN_FUZZY_LENGTH = 3;
+    // Caps on edit-distance checks and accepted fuzzy terms per query term
+    private static final int MAX_FUZZY_CANDIDATES = 2000;
+    private static final int MAX_FUZZY_TERMS = 16;
+
+    private static final ThreadLocal<FuzzyScratch> FUZZY_SCRATCH = ThreadLocal.withInitial(FuzzyScratch::new);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Postings postings = new Postings();
+    private Postings building;
+    private volatile boolean ready;
+
+    @Override
+    public void startRebuild() {
+        building = new Postings();
+    }
+
+    @Override
+    public void rebuildAdd(Book book) {
+        building.add(book);
+    }
+
+    @Override
+    public void finishRebuild() {
+        lock.writeLock().lock();
+        try {
+            postings = building;
+            building = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        lock.writeLock().lock();
+        try {
+            postings.remove(book.getId());
+            postings.add(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookDeleted(Long id) {
+        lock.writeLock().lock();
+        try {
+            postings.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public boolean needsContent() {
+        return true;
+    }
+
+    /**
+     * Search all fields
+     * @return matching book ids, best match first
+     */
+    public long[] search(String query) {
+        return search(query, Field.values());
+    }
+
+    /**
+     * Search the given fields
+     * @return matching book ids, best match first
+     */
+    public long[] search(String query, Field... fields) {
+        return search(query, false, fields);
+    }
+
+    /**
+     * Search all fields, tolerating typos
+     * @return matching book ids, best match first
+     */
+    public long[] searchFuzzy(String query) {
+        return search(query, true, Field.values());
+    }
+
+    private long[] search(String query, boolean fuzzy, Field[] fields) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return NO_IDS;
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> scores = null;
+            for (String term : terms) {
+                Map<Long, Integer> termScores = postings.match(term, fields, fuzzy);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Keep only books that match every term
+                    Map<Long, Integer> matchedBoth = new HashMap<>();
+                    for (Map.Entry<Long, Integer> entry : termScores.entrySet()) {
+                        Integer score = scores.get(entry.getKey());
+                        if (score != null) {
+                            matchedBoth.put(entry.getKey(), score + entry.getValue());
+                        }
+                    }
+                    scores = matchedBoth;
+                }
+                if (scores.isEmpty()) {
+                    return NO_IDS;
+                }
+            }
+            return rank(scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Split text into lower-case alphanumeric terms
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static long[] rank(Map<Long, Integer> scores) {
+        long[] ids = new long[scores.size()];
+        int[] values = new int[scores.size()];
+        Integer[] order = new Integer[scores.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            ids[i] = entry.getKey();
+            values[i] = entry.getValue();
+            order[i] = i;
+            i++;
+        }
+        Arrays.sort(order, (a, b) -> values[a] != values[b]
+                ? Integer.compare(values[b], values[a])
+                : Long.compare(ids[a], ids[b]));
+        long[] ranked = new long[ids.length];
+        for (int j = 0; j < order.length; j++) {
+            ranked[j] = ids[order[j]];
+        }
+        return ranked;
+    }
+
+    /**
+     * Term postings per field plus the terms of each book, so a book can be removed again.
+     * The vocabulary only grows between rebuilds; terms whose postings are gone are skipped.
+     */
+    private static class Postings {
+
+        private final Map<Field, TreeMap<String, Map<Long, Integer>>> byField = new EnumMap<>(Field.class);
+        private final Map<Long, Map<Field, Set<String>>> termsByBook = new HashMap<>();
+        private final Map<String, Integer> termIds = new HashMap<>();
+        private final List<String> vocabulary = new ArrayList<>();
+        private final Map<String, IntList> trigramPostings = new HashMap<>();
+
+        Postings() {
+            for (Field field : Field.values()) {
+                byField.put(field, new TreeMap<>());
+            }
+        }
+
+        void add(Book book) {
+            Map<Field, Set<String>> bookTerms = new EnumMap<>(Field.class);
+            addField(book.getId(), Field.NAME, book.getBookName(), bookTerms);
+            addField(book.getId(), Field.AUTHOR, book.getAuthorName(), bookTerms);
+            addField(book.getId(), Field.DESCRIPTION, book.getDescription(), bookTerms);
+            termsByBook.put(book.getId(), bookTerms);
+        }
+
+        private void addField(Long id, Field field, String text, Map<Field, Set<String>> bookTerms) {
+            List<String> terms = tokenize(text);
+            if (terms.isEmpty()) {
+                return;
+            }
+            TreeMap<String, Map<Long, Integer>> fieldPostings = byField.get(field);
+            for (String term : terms) {
+                fieldPostings.computeIfAbsent(term, t -> new HashMap<>()).merge(id, field.weight, Integer::sum);
+                if (term.length() >= MIN_FUZZY_LENGTH && !termIds.containsKey(term)) {
+                    termIds.put(term, vocabulary.size());
+                    for (String trigram : trigrams(term)) {
+                        trigramPostings.computeIfAbsent(trigram, t -> new IntList()).add(vocabulary.size());
+                    }
+                    vocabulary.add(term);
+                }
+            }
+            bookTerms.put(field, new HashSet<>(terms));
+        }
+
+        void remove(Long id) {
+            Map<Field, Set<String>> bookTerms = termsByBook.remove(id);
+            if (bookTerms == null) {
+                return;
+            }
+            bookTerms.forEach((field, terms) -> {
+                TreeMap<String, Map<Long, Integer>> fieldPostings = byField.get(field);
+                for (String term : terms) {
+                    Map<Long, Integer> books = fieldPostings.get(term);
+                    if (books != null) {
+                        books.remove(id);
+                        if (books.isEmpty()) {
+                            fieldPostings.remove(term);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * Score of every book matching the term. Exact term matches count four times the
+         * field weight, matches on a longer term that starts with it twice, and fuzzy matches
+         * twice at edit distance 1 and once at edit distance 2.
+         */
+        Map<Long, Integer> match(String term, Field[] fields, boolean fuzzy) {
+            Map<Long, Integer> scores = new HashMap<>();
+            if (fuzzy) {
+                FuzzyScratch scratch = FUZZY_SCRATCH.get();
+                int found = fuzzyTerms(term, scratch);
+                for (int i = 0; i < found; i++) {
+                    String similar = vocabulary.get(scratch.matchIds[i]);
+                    int factor = 3 - scratch.matchDistances[i];
+                    for (Field field : fields) {
+                        Map<Long, Integer> books = byField.get(field).get(similar);
+                        if (books != null) {
+                            books.forEach((id, weight) -> scores.merge(id, weight * factor, Math::max));
+                        }
+                    }
+                }
+            }
+            for (Field field : fields) {
+                SortedMap<String, Map<Long, Integer>> candidates = byField.get(field).tailMap(term);
+                int expansions = 0;
+                for (Map.Entry<String, Map<Long, Integer>> entry : candidates.entrySet()) {
+                    String indexed = entry.getKey();
+                    if (!indexed.startsWith(term) || expansions++ >= MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    int factor = indexed.length() == term.length() ? 4 : 2;
+                    entry.getValue().forEach((id, weight) -> scores.merge(id, weight * factor, Math::max));
+                }
+            }
+            return scores;
+        }
+
+        /**
+         * Vocabulary terms within edit distance 1 (short terms) or 2 of the given term,
+         * excluding the term itself. Results are left in the scratch match arrays.
+         * @return number of matches found
+         */
+        private int fuzzyTerms(String term, FuzzyScratch scratch) {
+            if (term.length() < MIN_FUZZY_LENGTH) {
+                return 0;
+            }
+            int maxDistance = term.length() <= 4 ? 1 : 2;
+            List<String> grams = trigrams(term);
+            // Each edit destroys at most three trigrams
+            int minShared = Math.max(1, grams.size() - 3 * maxDistance);
+
+            scratch.ensureVocabulary(vocabulary.size());
+            int[] counts = scratch.counts;
+            IntList touched = scratch.touched;
+            touched.clear();
+            for (String gram : grams) {
+                IntList termsWithGram = trigramPostings.get(gram);
+                if (termsWithGram == null) {
+                    continue;
+                }
+                for (int i = 0; i < termsWithGram.size; i++) {
+                    int termId = termsWithGram.values[i];
+                    if (counts[termId]++ == 0) {
+                        touched.add(termId);
+                    }
+                }
+            }
+
+            int found = 0;
+            int checked = 0;
+            for (int i = 0; i < touched.size; i++) {
+                int termId = touched.values[i];
+                int shared = counts[termId];
+                counts[termId] = 0;
+                if (shared < minShared || checked >= MAX_FUZZY_CANDIDATES) {
+                    continue;
+                }
+                String candidate = vocabulary.get(termId);
+                if (Math.abs(candidate.length() - term.length()) > maxDistance || candidate.equals(term)) {
+                    continue;
+                }
+                checked++;
+                int distance = boundedDistance(term, candidate, maxDistance, scratch);
+                if (distance <= maxDistance) {
+                    found = scratch.offerMatch(found, termId, distance);
+                }
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Trigrams of a term padded with a boundary marker, so short terms still get some
+     */
+    private static List<String> trigrams(String term) {
+        String padded = "$" + term + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    /**
+     * Levenshtein distance, or maxDistance + 1 as soon as it is known to exceed maxDistance
+     */
+    private static int boundedDistance(String a, String b, int maxDistance, FuzzyScratch scratch) {
+        int[] previous = scratch.row(0, b.length() + 1);
+        int[] current = scratch.row(1, b.length() + 1);
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    /**
+     * Growable int array without boxing
+     */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Per-thread buffers reused by every fuzzy lookup, so scoring allocates almost nothing
+     */
+    private static final class FuzzyScratch {
+        int[] counts = new int[0];
+        final IntList touched = new IntList();
+        final int[][] rows = new int[2][32];
+        final int[] matchIds = new int[MAX_FUZZY_TERMS];
+        final int[] matchDistances = new int[MAX_FUZZY_TERMS];
+
+        void ensureVocabulary(int size) {
+            if (counts.length < size) {
+                counts = new int[Math.max(size, counts.length * 2)];
+            }
+        }
+
+        int[] row(int index, int length) {
+            if (rows[index].length < length) {
+                rows[index] = new int[length * 2];
+            }
+            return rows[index];
+        }
+
+        /**
+         * Keep the closest MAX_FUZZY_TERMS matches
+         * @return new number of kept matches
+         */
+        int offerMatch(int found, int termId, int distance) {
+            if (found < MAX_FUZZY_TERMS) {
+                matchIds[found] = termId;
+                matchDistances[found] = distance;
+                return found + 1;
+            }
+            int worst = 0;
+            for (int i = 1; i < found; i++) {
+                if (matchDistances[i] > matchDistances[worst]) {
+                    worst = i;
+                }
+            }
+            if (distance < matchDistances[worst]) {
+                matchIds[worst] = termId;
+                matchDistances[worst] = distance;
+            }
+            return found;
+        }
+    }
+}
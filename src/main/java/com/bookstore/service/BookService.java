@@ -3,37 +3,69 @@ package com.bookstore.service;
 import com.bookstore.dto.*;
 import com.bookstore.model.Book;
 import com.bookstore.repository.BookRepository;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.List;
-import java.util.UUID;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class BookService {
     
     private final BookRepository bookRepository;
-    private static final String UPLOAD_DIR = "uploads/books/";
+    private final BookSearchIndex bookSearchIndex;
+    private final BookIndexManager bookIndexManager;
+    private final BookCatalogCache bookCatalogCache;
+    private final BookPriceIndex bookPriceIndex;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final BookFacetIndex bookFacetIndex;
+    private final CatalogVersion catalogVersion;
+    private final CatalogSnapshot catalogSnapshot;
+    private final BookImageService bookImageService;
+    private final PlatformTransactionManager transactionManager;
+    private final AuthorService authorService;
+    private final EntityManager entityManager;
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int FIND_BY_ID_CHUNK = 1000;
     
     /**
      * Add a new book with image upload
      */
-    @Transactional
     public BookResponseDto addBook(BookDto bookDto, MultipartFile image) {
         // Check if book ID already exists
         if (bookRepository.existsByBookId(bookDto.getBookId())) {
             throw new RuntimeException("Book ID already exists");
         }
         
+        // Write the image before the transaction so no connection is held during the copy
+        String imagePath = image != null && !image.isEmpty() ? bookImageService.stage(image) : null;
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            if (imagePath != null) {
+                bookImageService.attach(imagePath);
+            }
+            return insertBook(bookDto, imagePath);
+        });
+    }
+    
+    private BookResponseDto insertBook(BookDto bookDto, String imagePath) {
         // Create new book
         Book book = new Book();
         book.setBookId(bookDto.getBookId());
@@ -41,15 +73,15 @@ public class BookService {
         book.setPrice(bookDto.getPrice());
         book.setDescription(bookDto.getDescription());
         book.setAuthorName(bookDto.getAuthorName());
+        book.setAuthor(authorService.resolve(bookDto.getAuthorName()));
         book.setAvailable(true);
-        
-        // Handle image upload
-        if (image != null && !image.isEmpty()) {
-            String imagePath = saveImage(image);
-            book.setImagePath(imagePath);
-        }
+        book.setImagePath(imagePath);
         
         Book savedBook = bookRepository.save(book);
+        bookIndexManager.bookSaved(savedBook);
+        bookCatalogCache.evictBook(savedBook.getId(), savedBook.getBookId());
+        catalogVersion.catalogChanged();
+        catalogSnapshot.bookChanged(savedBook.getId());
         return convertToResponseDto(savedBook);
     }
     
@@ -57,43 +89,93 @@ public class BookService {
      * Get book by ID
      */
     public BookResponseDto getBookById(Long id) {
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
-        return convertToResponseDto(book);
+        return bookCatalogCache.getById(id, () -> {
+            BookDetail book = bookRepository.findDetailById(id)
+                    .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
+            return convertToResponseDto(book);
+        });
     }
     
     /**
      * Get book by book ID
      */
     public BookResponseDto getBookByBookId(String bookId) {
-        Book book = bookRepository.findByBookId(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found with bookId: " + bookId));
-        return convertToResponseDto(book);
+        return bookCatalogCache.getByBookId(bookId, () -> {
+            BookDetail book = bookRepository.findDetailByBookId(bookId)
+                    .orElseThrow(() -> new RuntimeException("Book not found with bookId: " + bookId));
+            return convertToResponseDto(book);
+        });
     }
     
     /**
-     * Get all books
+     * Get all available books, without descriptions (see {@link #withDescriptions})
      */
-    public List<BookResponseDto> getAllBooks() {
-        return bookRepository.findAll().stream()
-                .map(this::convertToResponseDto)
-                .collect(Collectors.toList());
+    public List<BookResponseDto> getAvailableBooks() {
+        return bookCatalogCache.getAvailableBooks(this::convertAvailableSummaries);
     }
     
     /**
-     * Get all available books
+     * Available books from the catalog snapshot while it is current, otherwise from the database
      */
-    public List<BookResponseDto> getAvailableBooks() {
-        return bookRepository.findByAvailableTrue().stream()
+    private List<BookResponseDto> convertAvailableSummaries() {
+        List<BookSummary> books = catalogSnapshot.readAll(true);
+        if (books == null) {
+            books = bookRepository.findAvailableSummaries();
+        }
+        return books.stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
     
+    /**
+     * Write the catalog snapshot that the next start serves listings from, when it is due:
+     * once per snapshot interval, and soon after bulk changes invalidated it
+     */
+    @Scheduled(fixedDelayString = "${bookstore.snapshot.check-interval-ms:30000}",
+               initialDelayString = "${bookstore.snapshot.check-interval-ms:30000}")
+    @Transactional(readOnly = true)
+    public void writeSnapshot() {
+        if (!catalogSnapshot.isDue()) {
+            return;
+        }
+        long changeCount = catalogSnapshot.changeCount();
+        try (Stream<BookSummary> books = bookRepository.streamSummaries()) {
+            catalogSnapshot.write(books.iterator(), changeCount);
+        } catch (IOException e) {
+            log.error("Failed to write the catalog snapshot", e);
+        }
+    }
+    
+    /**
+     * Pass every book (or every available book) to the action, one row at a time
+     * Rows are streamed from the database and detached once converted, so memory use does not
+     * grow with the size of the catalog.
+     */
+    @Transactional(readOnly = true)
+    public void forEachBook(boolean availableOnly, Consumer<BookResponseDto> action) {
+        try (Stream<Book> books = availableOnly ? bookRepository.streamAvailable() : bookRepository.streamAll()) {
+            books.forEach(book -> {
+                action.accept(convertToResponseDto(book));
+                entityManager.detach(book);
+            });
+        }
+    }
+    
     /**
      * Update book (cannot update bookId and bookName)
      */
-    @Transactional
     public BookResponseDto updateBook(Long id, BookUpdateDto updateDto, MultipartFile image) {
+        // Write the image before the transaction so no connection or row lock is held during the copy
+        String imagePath = image != null && !image.isEmpty() ? bookImageService.stage(image) : null;
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            if (imagePath != null) {
+                bookImageService.attach(imagePath);
+            }
+            return updateBook(id, updateDto, imagePath);
+        });
+    }
+    
+    private BookResponseDto updateBook(Long id, BookUpdateDto updateDto, String imagePath) {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         
@@ -101,18 +183,22 @@ public class BookService {
         book.setPrice(updateDto.getPrice());
         book.setDescription(updateDto.getDescription());
         book.setAuthorName(updateDto.getAuthorName());
+        book.setAuthor(authorService.resolve(updateDto.getAuthorName()));
         
-        // Handle image upload if provided
-        if (image != null && !image.isEmpty()) {
-            // Delete old image if exists
+        // Replace the image if a new one was uploaded
+        if (imagePath != null) {
+            // Release old image if exists
             if (book.getImagePath() != null) {
-                deleteImage(book.getImagePath());
+                bookImageService.release(book.getImagePath());
             }
-            String imagePath = saveImage(image);
             book.setImagePath(imagePath);
         }
         
         Book updatedBook = bookRepository.save(book);
+        bookIndexManager.bookSaved(updatedBook);
+        bookCatalogCache.evictBook(updatedBook.getId(), updatedBook.getBookId());
+        catalogVersion.catalogChanged();
+        catalogSnapshot.bookChanged(updatedBook.getId());
         return convertToResponseDto(updatedBook);
     }
     
@@ -124,104 +210,258 @@ public class BookService {
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         
-        // Delete image if exists
+        // Release image if exists
         if (book.getImagePath() != null) {
-            deleteImage(book.getImagePath());
+            bookImageService.release(book.getImagePath());
         }
         
         bookRepository.delete(book);
+        bookIndexManager.bookDeleted(id);
+        bookCatalogCache.evictBook(id, book.getBookId());
+        catalogVersion.catalogChanged();
+        catalogSnapshot.bookChanged(id);
     }
     
     /**
-     * Search books by name
+     * Search books by name, without descriptions
      */
     public List<BookResponseDto> searchBooksByName(String name) {
-        return bookRepository.findByBookNameContainingIgnoreCase(name).stream()
+        if (bookSearchIndex.isReady()) {
+            return findRanked(bookSearchIndex.search(name, BookSearchIndex.Field.NAME)).stream()
+                    .map(this::convertToResponseDto)
+                    .collect(Collectors.toList());
+        }
+        return bookRepository.findSummariesByBookName(name, Sort.unsorted()).stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
     
     /**
-     * Search books by author
+     * Search books by author, without descriptions
+     * Until the search index is built, an exact author name is looked up by author id and
+     * anything else matched as a substring.
      */
     public List<BookResponseDto> searchBooksByAuthor(String author) {
-        return bookRepository.findByAuthorNameContainingIgnoreCase(author).stream()
+        if (bookSearchIndex.isReady()) {
+            return findRanked(bookSearchIndex.search(author, BookSearchIndex.Field.AUTHOR)).stream()
+                    .map(this::convertToResponseDto)
+                    .collect(Collectors.toList());
+        }
+        Long authorId = author.isBlank() ? null : authorService.findId(author);
+        List<BookSummary> books = authorId != null
+                ? bookRepository.findSummariesByAuthorId(authorId)
+                : bookRepository.findSummariesByAuthorName(author);
+        return books.stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
     
     /**
-     * Search and sort books
-     * @param search - search keyword for book name
-     * @param sort - sorting option: "price_asc" or "price_desc"
+     * Typeahead suggestions for book and author names, most popular first
+     * Empty until the suggestion index has been built.
+     * @param limit - number of suggestions, defaults to and is capped at 10
      */
-    public List<BookResponseDto> searchAndSortBooks(String search, String sort) {
-        List<Book> books;
+    public List<BookSuggestionDto> suggest(String prefix, Integer limit) {
+        int max = limit == null || limit <= 0
+                ? BookSuggestIndex.MAX_SUGGESTIONS
+                : Math.min(limit, BookSuggestIndex.MAX_SUGGESTIONS);
+        return bookSuggestIndex.suggest(prefix, max);
+    }
+    
+    /**
+     * One page of search and sort results
+     * The page size defaults to 20 and is capped at 100. Fuzzy matching and facets need the
+     * in-memory indexes: while they are being built, fuzzy searches match substrings of the
+     * book name only and no facets are returned. Descriptions are only loaded when asked for.
+     */
+    public BookPageDto searchAndSortBooksPage(BookQueryDto query) {
+        boolean searching = query.getSearch() != null && !query.getSearch().trim().isEmpty();
+        long[] matches = null;
+        if (searching && bookSearchIndex.isReady()) {
+            matches = query.isFuzzy()
+                    ? bookSearchIndex.searchFuzzy(query.getSearch())
+                    : bookSearchIndex.search(query.getSearch());
+        }
         
-        if (search != null && !search.trim().isEmpty()) {
-            // Search with sorting
-            if ("price_asc".equals(sort)) {
-                books = bookRepository.findByBookNameContainingIgnoreCaseOrderByPriceAsc(search);
-            } else if ("price_desc".equals(sort)) {
-                books = bookRepository.findByBookNameContainingIgnoreCaseOrderByPriceDesc(search);
-            } else {
-                books = bookRepository.findByBookNameContainingIgnoreCase(search);
+        BookPageDto page = findPage(query, matches);
+        if (query.isFacets() && bookFacetIndex.isReady() && (!searching || matches != null)) {
+            // Counted over every match, before the price range filter
+            page.setFacets(bookFacetIndex.count(matches));
+        }
+        if (query.isDescriptions()) {
+            addDescriptions(page.getBooks());
+        }
+        return page;
+    }
+    
+    /**
+     * Find one page of books for the query
+     * @param matches - ranked search index results, or null when not searching or the index is not built
+     */
+    private BookPageDto findPage(BookQueryDto query, long[] matches) {
+        String search = query.getSearch();
+        String sort = query.getSort();
+        BookCursor after = BookCursor.decode(query.getCursor());
+        BigDecimal minPrice = query.getMinPrice();
+        BigDecimal maxPrice = query.getMaxPrice();
+        int pageSize = pageSizeOf(query.getSize());
+        boolean searching = search != null && !search.trim().isEmpty();
+        boolean priceSort = "price_asc".equals(sort) || "price_desc".equals(sort);
+        boolean descending = "price_desc".equals(sort);
+        BookCursor.Kind priceKind = descending ? BookCursor.Kind.PRICE_DESC : BookCursor.Kind.PRICE_ASC;
+        // A search that was paged newest first from the database stays there once the index is ready
+        boolean ranked = matches != null && (after == null || after.getKind() != BookCursor.Kind.CREATED);
+        
+        if (bookPriceIndex.isReady() && (!searching || matches != null)) {
+            long minCents = minPrice != null ? BookPriceIndex.toCents(minPrice) : Long.MIN_VALUE;
+            long maxCents = maxPrice != null ? BookPriceIndex.toCents(maxPrice) : Long.MAX_VALUE;
+            if (priceSort) {
+                BookCursor.expect(after, priceKind);
+                BitSet filter = matches != null ? bookPriceIndex.filterOf(matches) : null;
+                // One extra id tells whether there is a next page
+                long[] ids = bookPriceIndex.sorted(filter, descending, minCents, maxCents,
+                        after != null ? BookPriceIndex.toCents(after.getPrice()) : 0,
+                        after != null ? after.getId() : -1, pageSize + 1);
+                return toPage(findRanked(ids), pageSize, book -> BookCursor.afterPrice(descending, book.price(), book.id()));
             }
-        } else {
-            // Just sorting
-            if ("price_asc".equals(sort)) {
-                books = bookRepository.findAllByOrderByPriceAsc();
-            } else if ("price_desc".equals(sort)) {
-                books = bookRepository.findAllByOrderByPriceDesc();
-            } else {
-                books = bookRepository.findAll();
+            if (ranked) {
+                if (minPrice != null || maxPrice != null) {
+                    matches = bookPriceIndex.retainInRange(matches, minCents, maxCents);
+                }
+                return rankedPage(matches, after, pageSize);
             }
         }
         
-        return books.stream()
+        // Database keyset queries, also used while the indexes are being built
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        String keyword = searching ? search.trim() : null;
+        if (priceSort) {
+            BookCursor.expect(after, priceKind);
+            List<BookSummary> books = descending
+                    ? bookRepository.findPageByPriceDesc(keyword, minPrice, maxPrice, priceOf(after), idOf(after), limit)
+                    : bookRepository.findPageByPriceAsc(keyword, minPrice, maxPrice, priceOf(after), idOf(after), limit);
+            return toPage(books, pageSize, book -> BookCursor.afterPrice(descending, book.price(), book.id()));
+        }
+        
+        // Default sort: newest first; a ranked search cursor cannot be continued here
+        BookCursor.expect(after, BookCursor.Kind.CREATED);
+        List<BookSummary> books = bookRepository.findPageByNewest(keyword, minPrice, maxPrice,
+                after != null ? after.getCreatedAt() : null, idOf(after), limit);
+        return toPage(books, pageSize, book -> BookCursor.afterCreated(book.createdAt(), book.id()));
+    }
+    
+    /**
+     * One page of an author's books, newest first
+     */
+    public BookPageDto getBooksByAuthor(Long authorId, String cursor, Integer size) {
+        int pageSize = pageSizeOf(size);
+        BookCursor after = BookCursor.expect(BookCursor.decode(cursor), BookCursor.Kind.CREATED);
+        List<BookSummary> books = bookRepository.findPageByAuthor(authorId, after != null ? after.getCreatedAt() : null,
+                idOf(after), PageRequest.of(0, pageSize + 1));
+        return toPage(books, pageSize, book -> BookCursor.afterCreated(book.createdAt(), book.id()));
+    }
+    
+    private static int pageSizeOf(Integer size) {
+        return size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+    
+    /**
+     * Page through relevance-ranked ids from the search index
+     */
+    private BookPageDto rankedPage(long[] ids, BookCursor after, int pageSize) {
+        int offset = BookCursor.expect(after, BookCursor.Kind.RANK) != null ? after.getOffset() : 0;
+        int end = Math.min(ids.length, offset + pageSize);
+        List<BookResponseDto> books = offset < end
+                ? findRanked(Arrays.copyOfRange(ids, offset, end)).stream()
+                        .map(this::convertToResponseDto)
+                        .collect(Collectors.toList())
+                : new ArrayList<>();
+        String nextCursor = end < ids.length ? BookCursor.atOffset(end).encode() : null;
+        return new BookPageDto(books, nextCursor);
+    }
+    
+    /**
+     * Trim a keyset query result fetched with one extra row down to a page
+     */
+    private BookPageDto toPage(List<BookSummary> books, int pageSize, Function<BookSummary, BookCursor> cursorOf) {
+        String nextCursor = null;
+        if (books.size() > pageSize) {
+            books = books.subList(0, pageSize);
+            nextCursor = cursorOf.apply(books.get(pageSize - 1)).encode();
+        }
+        return new BookPageDto(books.stream()
                 .map(this::convertToResponseDto)
+                .collect(Collectors.toList()), nextCursor);
+    }
+    
+    private static BigDecimal priceOf(BookCursor cursor) {
+        return cursor != null ? cursor.getPrice() : null;
+    }
+    
+    private static Long idOf(BookCursor cursor) {
+        return cursor != null ? cursor.getId() : null;
+    }
+    
+    /**
+     * Copies of books from a list result with their descriptions filled in, for callers that
+     * ask for them; the books passed in may be shared with the catalog cache and are left as is
+     */
+    public List<BookResponseDto> withDescriptions(List<BookResponseDto> books) {
+        List<BookResponseDto> copies = books.stream()
+                .map(book -> new BookResponseDto(book.getId(), book.getBookId(), book.getBookName(), book.getPrice(),
+                        null, book.getAuthorName(), book.getImagePath(), book.getAvailable(), book.getCreatedAt(),
+                        book.getUpdatedAt()))
                 .collect(Collectors.toList());
+        addDescriptions(copies);
+        return copies;
     }
     
     /**
-     * Save uploaded image
+     * Fill in the descriptions of books loaded without them, one id-keyed query per chunk
      */
-    private String saveImage(MultipartFile file) {
-        try {
-            // Create upload directory if it doesn't exist
-            Path uploadPath = Paths.get(UPLOAD_DIR);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
+    private void addDescriptions(List<BookResponseDto> books) {
+        Map<Long, String> descriptions = new HashMap<>();
+        for (int from = 0; from < books.size(); from += FIND_BY_ID_CHUNK) {
+            List<Long> ids = books.subList(from, Math.min(from + FIND_BY_ID_CHUNK, books.size())).stream()
+                    .map(BookResponseDto::getId)
+                    .collect(Collectors.toList());
+            for (BookDescription row : bookRepository.findDescriptions(ids)) {
+                descriptions.put(row.id(), row.description());
             }
-            
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".") 
-                ? originalFilename.substring(originalFilename.lastIndexOf(".")) 
-                : "";
-            String filename = UUID.randomUUID().toString() + extension;
-            
-            // Save file
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            
-            return UPLOAD_DIR + filename;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to save image: " + e.getMessage());
         }
+        books.forEach(book -> book.setDescription(descriptions.get(book.getId())));
     }
     
     /**
-     * Delete image file
+     * Count all books
      */
-    private void deleteImage(String imagePath) {
-        try {
-            Path path = Paths.get(imagePath);
-            Files.deleteIfExists(path);
-        } catch (IOException e) {
-            // Log error but don't throw exception
-            System.err.println("Failed to delete image: " + e.getMessage());
+    public long countBooks() {
+        return bookRepository.count();
+    }
+    
+    /**
+     * Load books by id, keeping the order of the given ids
+     */
+    private List<BookSummary> findRanked(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
         }
+        Map<Long, BookSummary> booksById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += FIND_BY_ID_CHUNK) {
+            List<Long> chunk = Arrays.stream(ids, from, Math.min(ids.length, from + FIND_BY_ID_CHUNK))
+                    .boxed()
+                    .collect(Collectors.toList());
+            bookRepository.findSummariesByIdIn(chunk).forEach(book -> booksById.put(book.id(), book));
+        }
+        List<BookSummary> books = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            BookSummary book = booksById.get(id);
+            // Skip ids whose deletion has not reached the index yet
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
     }
     
     /**
@@ -234,11 +474,27 @@ public class BookService {
         dto.setBookName(book.getBookName());
         dto.setPrice(book.getPrice());
         dto.setDescription(book.getDescription());
-        dto.setAuthorName(book.getAuthorName());
+        dto.setAuthorName(authorService.canonicalName(book.getAuthorName()));
         dto.setImagePath(book.getImagePath());
         dto.setAvailable(book.getAvailable());
         dto.setCreatedAt(book.getCreatedAt());
         dto.setUpdatedAt(book.getUpdatedAt());
         return dto;
     }
+    
+    /**
+     * Convert BookDetail projection to BookResponseDto
+     */
+    private BookResponseDto convertToResponseDto(BookDetail book) {
+        return new BookResponseDto(book.id(), book.bookId(), book.bookName(), book.price(), book.description(),
+                authorService.canonicalName(book.authorName()), book.imagePath(), book.available(), book.createdAt(), book.updatedAt());
+    }
+    
+    /**
+     * Convert BookSummary projection to BookResponseDto, leaving the description empty
+     */
+    private BookResponseDto convertToResponseDto(BookSummary book) {
+        return new BookResponseDto(book.id(), book.bookId(), book.bookName(), book.price(), null,
+                authorService.canonicalName(book.authorName()), book.imagePath(), book.available(), book.createdAt(), book.updatedAt());
+    }
 }
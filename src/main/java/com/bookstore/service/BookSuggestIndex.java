@@ -0,0 +1,390 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookSuggestionDto;
+import com.bookstore.model.Book;
+import com.bookstore.repository.OrderItemRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Prefix trie over book names and author names for typeahead.
+ * Every node keeps its best suggestions by popularity (units sold), so a lookup is a walk
+ * down the prefix plus a copy. Names are also reachable from each later word, so
+ * "pot" suggests "Harry Potter".
+ */
+@Component
+@RequiredArgsConstructor
+public class BookSuggestIndex implements BookIndex {
+
+    /**
+     * Suggestions kept per node, and so the most a query can return
+     */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final OrderItemRepository orderItemRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Trie trie = new Trie(new HashMap<>());
+    private Trie building;
+    private volatile boolean ready;
+
+    @Override
+    public void startRebuild() {
+        Map<Long, Long> sales = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantityByBook()) {
+            sales.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        building = new Trie(sales);
+    }
+
+    @Override
+    public void rebuildAdd(Book book) {
+        building.add(book, false);
+    }
+
+    @Override
+    public void finishRebuild() {
+        building.root.computeTop();
+        lock.writeLock().lock();
+        try {
+            trie = building;
+            building = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookSaved(Book book) {
+        lock.writeLock().lock();
+        try {
+            trie.remove(book.getId());
+            trie.add(book, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void bookDeleted(Long id) {
+        lock.writeLock().lock();
+        try {
+            trie.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Raise the popularity of an ordered book and its author
+     */
+    public void recordSale(Long bookId, int quantity) {
+        lock.writeLock().lock();
+        try {
+            trie.recordSale(bookId, quantity);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Most popular book and author names starting with the prefix
+     */
+    public List<BookSuggestionDto> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<BookSuggestionDto> suggestions = new ArrayList<>();
+        if (key.isEmpty()) {
+            return suggestions;
+        }
+        lock.readLock().lock();
+        try {
+            Node node = trie.root.find(key);
+            if (node != null) {
+                for (int i = 0; i < node.top.length && i < limit; i++) {
+                    Entry entry = node.top[i];
+                    suggestions.add(new BookSuggestionDto(entry.text, entry.bookId != null ? "book" : "author", entry.bookId));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return suggestions;
+    }
+
+    /**
+     * Lower-case letters and digits with single spaces between words
+     */
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(text.length());
+        for (String term : BookSearchIndex.tokenize(text)) {
+            if (key.length() > 0) {
+                key.append(' ');
+            }
+            key.append(term);
+        }
+        return key.toString();
+    }
+
+    /**
+     * The normalized name and every suffix of it that starts at a later word
+     */
+    private static List<String> keys(String name) {
+        String normalized = normalize(name);
+        List<String> keys = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        keys.add(normalized);
+        for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+            keys.add(normalized.substring(i + 1));
+        }
+        return keys;
+    }
+
+    /**
+     * A suggestion: a book name (with bookId) or an author name (without)
+     */
+    private static final class Entry {
+        final String text;
+        final Long bookId;
+        long popularity;
+        // Number of indexed books by this author
+        int books;
+
+        Entry(String text, Long bookId, long popularity) {
+            this.text = text;
+            this.bookId = bookId;
+            this.popularity = popularity;
+        }
+
+        static int compare(Entry a, Entry b) {
+            if (a.popularity != b.popularity) {
+                return Long.compare(b.popularity, a.popularity);
+            }
+            return a.text.compareToIgnoreCase(b.text);
+        }
+    }
+
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        Entry[] entries = NO_ENTRIES;
+        Entry[] top = NO_ENTRIES;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newKeys[at] = c;
+            newChildren[at] = new Node();
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+
+        Node find(String key) {
+            Node node = this;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            return node;
+        }
+
+        /**
+         * Recompute the best suggestions of this node from its own entries and its children's
+         */
+        void updateTop() {
+            List<Entry> candidates = new ArrayList<>(Arrays.asList(entries));
+            for (Node child : children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(Entry::compare);
+            List<Entry> best = new ArrayList<>(MAX_SUGGESTIONS);
+            for (Entry entry : candidates) {
+                // The same name can arrive through several of its word suffixes
+                if (!best.contains(entry)) {
+                    best.add(entry);
+                    if (best.size() == MAX_SUGGESTIONS) {
+                        break;
+                    }
+                }
+            }
+            top = best.toArray(NO_ENTRIES);
+        }
+
+        void computeTop() {
+            for (Node child : children) {
+                child.computeTop();
+            }
+            updateTop();
+        }
+    }
+
+    private static final class Trie {
+        final Node root = new Node();
+        final Map<Long, Long> salesByBook;
+        final Map<Long, Entry> titles = new HashMap<>();
+        final Map<Long, String> authorKeyByBook = new HashMap<>();
+        final Map<String, Entry> authors = new HashMap<>();
+
+        Trie(Map<Long, Long> salesByBook) {
+            this.salesByBook = salesByBook;
+        }
+
+        /**
+         * Index a book; with update set, refresh the best suggestions along every touched path
+         */
+        void add(Book book, boolean update) {
+            long sales = salesByBook.getOrDefault(book.getId(), 0L);
+            Entry title = new Entry(book.getBookName(), book.getId(), sales);
+            titles.put(book.getId(), title);
+            for (String key : keys(book.getBookName())) {
+                insert(key, title, update);
+            }
+
+            String authorKey = normalize(book.getAuthorName());
+            if (authorKey.isEmpty()) {
+                return;
+            }
+            authorKeyByBook.put(book.getId(), authorKey);
+            Entry author = authors.get(authorKey);
+            if (author == null) {
+                author = new Entry(book.getAuthorName(), null, 0);
+                authors.put(authorKey, author);
+                for (String key : keys(book.getAuthorName())) {
+                    insert(key, author, update);
+                }
+            }
+            author.books++;
+            author.popularity += sales;
+            if (update) {
+                refresh(author);
+            }
+        }
+
+        void remove(Long id) {
+            Entry title = titles.remove(id);
+            if (title == null) {
+                return;
+            }
+            for (String key : keys(title.text)) {
+                delete(key, title);
+            }
+
+            String authorKey = authorKeyByBook.remove(id);
+            Entry author = authorKey != null ? authors.get(authorKey) : null;
+            if (author == null) {
+                return;
+            }
+            author.books--;
+            author.popularity -= title.popularity;
+            if (author.books == 0) {
+                authors.remove(authorKey);
+                for (String key : keys(author.text)) {
+                    delete(key, author);
+                }
+            } else {
+                refresh(author);
+            }
+        }
+
+        void recordSale(Long bookId, int quantity) {
+            salesByBook.merge(bookId, (long) quantity, Long::sum);
+            Entry title = titles.get(bookId);
+            if (title == null) {
+                return;
+            }
+            title.popularity += quantity;
+            refresh(title);
+            String authorKey = authorKeyByBook.get(bookId);
+            Entry author = authorKey != null ? authors.get(authorKey) : null;
+            if (author != null) {
+                author.popularity += quantity;
+                refresh(author);
+            }
+        }
+
+        private void insert(String key, Entry entry, boolean update) {
+            Deque<Node> path = new ArrayDeque<>(key.length() + 1);
+            Node node = root;
+            path.push(node);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+                path.push(node);
+            }
+            Entry[] entries = Arrays.copyOf(node.entries, node.entries.length + 1);
+            entries[entries.length - 1] = entry;
+            node.entries = entries;
+            if (update) {
+                path.forEach(Node::updateTop);
+            }
+        }
+
+        private void delete(String key, Entry entry) {
+            Deque<Node> path = walk(key);
+            if (path == null) {
+                return;
+            }
+            Node node = path.peek();
+            node.entries = Arrays.stream(node.entries).filter(e -> e != entry).toArray(Entry[]::new);
+            path.forEach(Node::updateTop);
+        }
+
+        /**
+         * Re-rank an entry whose popularity changed
+         */
+        private void refresh(Entry entry) {
+            for (String key : keys(entry.text)) {
+                Deque<Node> path = walk(key);
+                if (path != null) {
+                    path.forEach(Node::updateTop);
+                }
+            }
+        }
+
+        /**
+         * Nodes from the end of the key back up to the root, or null if the key is not in the trie
+         */
+        private Deque<Node> walk(String key) {
+            Deque<Node> path = new ArrayDeque<>(key.length() + 1);
+            Node node = root;
+            path.push(node);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.child(key.charAt(i));
+                if (node == null) {
+                    return null;
+                }
+                path.push(node);
+            }
+            return path;
+        }
+    }
+}
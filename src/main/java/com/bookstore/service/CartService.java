@@ -1,148 +1,223 @@
 package com.bookstore.service;
 
+import com.bookstore.dto.BookResponseDto;
+import com.bookstore.dto.CartBatchDto;
 import com.bookstore.dto.CartItemDto;
-import com.bookstore.model.Book;
-import com.bookstore.model.CartItem;
-import com.bookstore.model.User;
-import com.bookstore.repository.BookRepository;
-import com.bookstore.repository.CartItemRepository;
-import com.bookstore.repository.UserRepository;
+import com.bookstore.dto.CartViewDto;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
+/**
+ * Shopping carts, read and changed through the write-behind {@link CartStore}
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
     
-    private final CartItemRepository cartItemRepository;
-    private final UserRepository userRepository;
-    private final BookRepository bookRepository;
+    private final BookService bookService;
+    private final CartStore cartStore;
+    private final PrincipalCache principalCache;
     
     /**
      * Add item to cart
      */
-    @Transactional
     public CartItemDto addToCart(String username, Long bookId) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        Long userId = userIdOf(username);
         
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
+        // Served from the catalog cache, so adding a book usually reads nothing from the database
+        BookResponseDto book = bookService.getBookById(bookId);
         
         if (!book.getAvailable()) {
             throw new RuntimeException("Book is not available");
         }
         
-        // Check if item already exists in cart
-        var existingItem = cartItemRepository.findByUserAndBookId(user, bookId);
+        // One atomic upsert inserts the line or adds one to it, so racing adds are neither lost nor duplicated.
+        // It runs under the cart's stripe on purpose: the stripe orders the cached line and any pending
+        // set or remove of it with the increment, and the upsert itself is what keeps instances apart.
+        return cartStore.withCart(userId, cart -> cart.add(List.of(newLine(book, 1))).get(0).toDto());
+    }
+    
+    /**
+     * Apply a list of add, set and remove operations to a user's cart, all or none.
+     * Operations are checked against the cart first, then the upserts of books that are only
+     * added to and the other quantity changes and removals are written in one transaction.
+     */
+    public CartViewDto applyBatch(String username, CartBatchDto batch) {
+        if (batch.getOperations() == null || batch.getOperations().isEmpty()) {
+            throw new RuntimeException("No cart operations given");
+        }
+        Long userId = userIdOf(username);
         
-        if (existingItem.isPresent()) {
-            // Update quantity
-            CartItem cartItem = existingItem.get();
-            cartItem.setQuantity(cartItem.getQuantity() + 1);
-            CartItem updated = cartItemRepository.save(cartItem);
-            return convertToDto(updated);
-        } else {
-            // Create new cart item
-            CartItem cartItem = new CartItem();
-            cartItem.setUser(user);
-            cartItem.setBook(book);
-            cartItem.setQuantity(1);
-            cartItem.setPriceAtAddition(book.getPrice());
-            CartItem saved = cartItemRepository.save(cartItem);
-            return convertToDto(saved);
+        // Books being added, served from the catalog cache
+        Map<Long, BookResponseDto> books = new HashMap<>();
+        for (CartBatchDto.Operation operation : batch.getOperations()) {
+            if ("add".equals(operation.getType())) {
+                if (operation.getBookId() == null) {
+                    throw new RuntimeException("Book id is required to add to cart");
+                }
+                BookResponseDto book = books.computeIfAbsent(operation.getBookId(), bookService::getBookById);
+                if (!book.getAvailable()) {
+                    throw new RuntimeException("Book is not available: " + book.getBookName());
+                }
+            }
         }
+        
+        return cartStore.withCart(userId, cart -> {
+            // New quantity by book id, zero for removed lines; the cart is untouched until all are valid
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            // Books with a set or remove, whose final quantity is not just an increment
+            Set<Long> overwritten = new HashSet<>();
+            for (CartBatchDto.Operation operation : batch.getOperations()) {
+                Long bookId = bookIdOf(cart, operation);
+                if (!"add".equals(operation.getType())) {
+                    overwritten.add(bookId);
+                }
+                CartStore.Line line = cart.line(bookId);
+                int current = quantities.getOrDefault(bookId, line != null ? line.getQuantity() : 0);
+                int quantity = switch (String.valueOf(operation.getType())) {
+                    case "add" -> current + positive(operation.getQuantity() != null ? operation.getQuantity() : 1);
+                    case "set" -> {
+                        if (current == 0) {
+                            throw new RuntimeException("Cart item not found");
+                        }
+                        yield positive(operation.getQuantity());
+                    }
+                    case "remove" -> {
+                        if (current == 0) {
+                            throw new RuntimeException("Cart item not found");
+                        }
+                        yield 0;
+                    }
+                    default -> throw new RuntimeException("Unknown cart operation: " + operation.getType());
+                };
+                quantities.put(bookId, quantity);
+            }
+            
+            List<CartStore.NewLine> newLines = new ArrayList<>();
+            Map<CartStore.Line, Integer> changes = new HashMap<>();
+            quantities.forEach((bookId, quantity) -> {
+                CartStore.Line line = cart.line(bookId);
+                if (line == null) {
+                    if (quantity > 0) {
+                        newLines.add(newLine(books.get(bookId), quantity));
+                    }
+                } else if (!overwritten.contains(bookId)) {
+                    newLines.add(newLine(books.get(bookId), quantity - line.getQuantity()));
+                } else if (quantity != line.getQuantity()) {
+                    changes.put(line, quantity);
+                }
+            });
+            cart.apply(changes, newLines);
+            return cart.view();
+        });
+    }
+    
+    /**
+     * Get user's cart items and total together
+     */
+    public CartViewDto getCart(String username) {
+        return cartStore.withCart(userIdOf(username), CartStore.Cart::view);
     }
     
     /**
      * Get user's cart items
      */
     public List<CartItemDto> getCartItems(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        return cartItemRepository.findByUserOrderByAddedAtDesc(user).stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return cartStore.withCart(userIdOf(username), CartStore.Cart::items);
     }
     
     /**
      * Update cart item quantity
      */
-    @Transactional
     public CartItemDto updateQuantity(Long cartItemId, Integer quantity) {
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-        
-        if (quantity <= 0) {
-            throw new RuntimeException("Quantity must be greater than 0");
-        }
-        
-        cartItem.setQuantity(quantity);
-        CartItem updated = cartItemRepository.save(cartItem);
-        return convertToDto(updated);
+        return cartStore.withCart(ownerOf(cartItemId), cart -> {
+            CartStore.Line line = cart.lineById(cartItemId);
+            if (line == null) {
+                throw new RuntimeException("Cart item not found");
+            }
+            
+            if (quantity <= 0) {
+                throw new RuntimeException("Quantity must be greater than 0");
+            }
+            
+            cart.setQuantity(line, quantity);
+            return line.toDto();
+        });
     }
     
     /**
      * Remove item from cart
      */
-    @Transactional
     public void removeFromCart(Long cartItemId) {
-        if (!cartItemRepository.existsById(cartItemId)) {
-            throw new RuntimeException("Cart item not found");
-        }
-        cartItemRepository.deleteById(cartItemId);
+        cartStore.withCart(ownerOf(cartItemId), cart -> {
+            CartStore.Line line = cart.lineById(cartItemId);
+            if (line == null) {
+                throw new RuntimeException("Cart item not found");
+            }
+            cart.remove(line);
+            return null;
+        });
     }
     
     /**
      * Clear user's cart
      */
-    @Transactional
     public void clearCart(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        cartItemRepository.deleteByUser(user);
+        cartStore.withCart(userIdOf(username), cart -> {
+            cart.clear();
+            return null;
+        });
     }
     
     /**
      * Get cart item count
      */
     public long getCartItemCount(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        return cartItemRepository.countByUser(user);
+        return cartStore.withCart(userIdOf(username), CartStore.Cart::size);
     }
     
     /**
      * Calculate cart total
      */
     public BigDecimal getCartTotal(String username) {
-        List<CartItemDto> items = getCartItems(username);
-        return items.stream()
-                .map(CartItemDto::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return cartStore.withCart(userIdOf(username), CartStore.Cart::total);
     }
     
-    /**
-     * Convert CartItem entity to DTO
-     */
-    private CartItemDto convertToDto(CartItem cartItem) {
-        CartItemDto dto = new CartItemDto();
-        dto.setId(cartItem.getId());
-        dto.setBookId(cartItem.getBook().getId());
-        dto.setBookName(cartItem.getBook().getBookName());
-        dto.setAuthorName(cartItem.getBook().getAuthorName());
-        dto.setImagePath(cartItem.getBook().getImagePath());
-        dto.setPrice(cartItem.getPriceAtAddition());
-        dto.setQuantity(cartItem.getQuantity());
-        dto.setSubtotal(cartItem.getSubtotal());
-        return dto;
+    private Long userIdOf(String username) {
+        return principalCache.idOf(username);
+    }
+    
+    private static CartStore.NewLine newLine(BookResponseDto book, int quantity) {
+        return new CartStore.NewLine(book.getId(), book.getBookName(), book.getAuthorName(), book.getImagePath(),
+                book.getPrice(), quantity);
+    }
+    
+    private static Long bookIdOf(CartStore.Cart cart, CartBatchDto.Operation operation) {
+        if (operation.getBookId() != null) {
+            return operation.getBookId();
+        }
+        CartStore.Line line = operation.getCartItemId() != null ? cart.lineById(operation.getCartItemId()) : null;
+        if (line == null) {
+            throw new RuntimeException("Cart item not found");
+        }
+        return line.getBookId();
+    }
+    
+    private static int positive(Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new RuntimeException("Quantity must be greater than 0");
+        }
+        return quantity;
+    }
+    
+    private Long ownerOf(Long cartItemId) {
+        Long userId = cartStore.ownerOf(cartItemId);
+        if (userId == null) {
+            throw new RuntimeException("Cart item not found");
+        }
+        return userId;
     }
 }
@@ -0,0 +1,591 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.CartItemDto;
+import com.bookstore.dto.CartLine;
+import com.bookstore.dto.CartViewDto;
+import com.bookstore.repository.CartItemRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Write-behind store of shopping carts by user id. Carts are loaded once and then read and
+ * changed in memory under one of a fixed set of lock stripes; quantity changes and removals
+ * are collected and written to cart_items on a timer or once enough are pending, one user's
+ * changes per transaction so a failing change only holds back its own cart.
+ * Adding books is not written behind: every add is one atomic upsert on the unique
+ * (user_id, book_id) key, so concurrent adds of the same book add to one row and none is lost.
+ * Assumes one application instance owns the cart_items table.
+ */
+@Slf4j
+@Component
+public class CartStore {
+
+    private static final int STRIPES = 64;
+    // Failed flushes after which a cart's pending changes are given up
+    private static final int MAX_FLUSH_ATTEMPTS = 5;
+    // Adds to the quantity of an existing row for the book and makes its id the generated key
+    private static final String UPSERT_LINE =
+            "insert into cart_items (user_id, book_id, quantity, price_at_addition, added_at) values (?, ?, ?, ?, ?) " +
+            "on duplicate key update quantity = quantity + ?, id = last_insert_id(id)";
+
+    private final CartItemRepository cartItemRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int flushThreshold;
+    private final long idleMs;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Long, Cart> carts = new ConcurrentHashMap<>();
+    // Owner of every line of the loaded carts, for changes addressed by line id
+    private final Map<Long, Long> userByLine = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyUsers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingChanges = new AtomicInteger();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cart-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CartStore(CartItemRepository cartItemRepository,
+                     JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${bookstore.cart.flush-threshold:500}") int flushThreshold,
+                     @Value("${bookstore.cart.idle-ms:1800000}") long idleMs) {
+        this.cartItemRepository = cartItemRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // Flushes commit on their own, also when called from inside another transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.flushThreshold = flushThreshold;
+        this.idleMs = idleMs;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Run an action on a user's cart, loading it first if needed, while holding its stripe
+     */
+    public <T> T withCart(Long userId, Function<Cart, T> action) {
+        T result;
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            Cart cart = carts.get(userId);
+            if (cart == null) {
+                cart = load(userId);
+            }
+            cart.lastAccess = System.currentTimeMillis();
+            result = action.apply(cart);
+        } finally {
+            lock.unlock();
+        }
+        if (pendingChanges.get() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Owner of a cart line, or null if there is no such line
+     */
+    public Long ownerOf(Long cartItemId) {
+        Long userId = userByLine.get(cartItemId);
+        if (userId != null) {
+            return userId;
+        }
+        return cartItemRepository.findUserIdById(cartItemId).orElse(null);
+    }
+
+    /**
+     * Hold a user's cart until the current transaction completes, e.g. while an order is created
+     * from it. Its pending changes are written in that transaction first, so the order reads the
+     * current cart, and no change can slip in between. After a commit the cart is dropped to be
+     * reloaded; after a rollback its changes are still pending.
+     */
+    public void lockForCheckout(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Checkout must run in a transaction");
+        }
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            Cart cart = carts.get(userId);
+            if (cart != null && !cart.pending.isEmpty()) {
+                writeChanges(cart.pending);
+            }
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        evict(userId);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget a user's cart after its rows were changed directly in the database
+     */
+    public void evict(Long userId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            Cart cart = carts.remove(userId);
+            if (cart != null) {
+                cart.lines.values().forEach(line -> userByLine.remove(line.id));
+                pendingChanges.addAndGet(-cart.pending.size());
+                dirtyUsers.remove(userId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write every pending change, then drop carts that have been idle for a while
+     */
+    @Scheduled(fixedDelayString = "${bookstore.cart.flush-interval-ms:2000}")
+    public void flush() {
+        synchronized (flushLock) {
+            for (Long userId : new ArrayList<>(dirtyUsers)) {
+                write(userId);
+            }
+            long idleSince = System.currentTimeMillis() - idleMs;
+            for (Map.Entry<Long, Cart> entry : carts.entrySet()) {
+                if (entry.getValue().lastAccess < idleSince) {
+                    ReentrantLock lock = stripe(entry.getKey());
+                    lock.lock();
+                    try {
+                        Cart cart = carts.get(entry.getKey());
+                        if (cart != null && cart.pending.isEmpty() && cart.lastAccess < idleSince) {
+                            evict(entry.getKey());
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Write one user's pending changes in their own transaction while holding the cart's stripe.
+     * On failure they stay pending, until they have failed too often and are given up.
+     */
+    private void write(Long userId) {
+        ReentrantLock lock = stripe(userId);
+        lock.lock();
+        try {
+            dirtyUsers.remove(userId);
+            Cart cart = carts.get(userId);
+            if (cart == null || cart.pending.isEmpty()) {
+                return;
+            }
+            Map<Long, Integer> changes = cart.pending;
+            try {
+                List<Long> gone = transactionTemplate.execute(status -> writeChanges(changes));
+                cart.pending = new HashMap<>();
+                pendingChanges.addAndGet(-changes.size());
+                cart.failedFlushes = 0;
+                for (Long lineId : gone) {
+                    // Deleted by another path; the cached line is stale
+                    Line line = cart.lineById(lineId);
+                    if (line != null) {
+                        cart.lines.remove(line.bookId);
+                        userByLine.remove(lineId);
+                    }
+                }
+                log.debug("Flushed {} cart changes of user {}", changes.size(), userId);
+            } catch (RuntimeException e) {
+                if (++cart.failedFlushes < MAX_FLUSH_ATTEMPTS) {
+                    log.warn("Failed to flush {} cart changes of user {}, will retry", changes.size(), userId, e);
+                    dirtyUsers.add(userId);
+                } else {
+                    // Reloading the cart shows the user what is actually stored
+                    log.error("Giving up {} cart changes of user {} after {} failed flushes: {}",
+                            changes.size(), userId, cart.failedFlushes, changes, e);
+                    evict(userId);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply changes in the current transaction
+     * @return ids of the lines whose update matched no row
+     */
+    private List<Long> writeChanges(Map<Long, Integer> changes) {
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        changes.forEach((lineId, quantity) -> {
+            if (quantity > 0) {
+                updates.add(new Object[]{quantity, lineId});
+            } else {
+                deletes.add(new Object[]{lineId});
+            }
+        });
+        List<Long> gone = new ArrayList<>();
+        if (!updates.isEmpty()) {
+            int[] counts = jdbcTemplate.batchUpdate("update cart_items set quantity = ? where id = ?", updates);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    gone.add((Long) updates.get(i)[1]);
+                }
+            }
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from cart_items where id = ?", deletes);
+        }
+        return gone;
+    }
+
+    private Cart load(Long userId) {
+        Cart cart = new Cart(userId);
+        // One query for the lines and their books
+        for (CartLine item : cartItemRepository.findLinesByUserId(userId)) {
+            cart.lines.put(item.bookId(), new Line(item.id(), item.bookId(), item.bookName(), item.authorName(),
+                    item.imagePath(), item.priceAtAddition(), item.quantity()));
+            userByLine.put(item.id(), userId);
+        }
+        carts.put(userId, cart);
+        return cart;
+    }
+
+    private ReentrantLock stripe(Long userId) {
+        return stripes[Math.floorMod(userId.hashCode(), STRIPES)];
+    }
+
+    /**
+     * One user's cart; only touched through {@link #withCart} while its stripe is held
+     */
+    public final class Cart {
+        private final Long userId;
+        // Lines by book id, newest first
+        private final LinkedHashMap<Long, Line> lines = new LinkedHashMap<>();
+        // New quantity of changed lines by line id, zero for removed ones
+        private Map<Long, Integer> pending = new HashMap<>();
+        private int failedFlushes;
+        // Ids of lines removed since the cart was loaded, whose rows may not be deleted yet
+        private final Set<Long> removedIds = new HashSet<>();
+        private long lastAccess;
+
+        private Cart(Long userId) {
+            this.userId = userId;
+        }
+
+        public Line line(Long bookId) {
+            return lines.get(bookId);
+        }
+
+        public Line lineById(Long cartItemId) {
+            for (Line line : lines.values()) {
+                if (line.id.equals(cartItemId)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Add books to the cart as one atomic upsert each: one statement for a single book,
+         * otherwise one batch plus a read of the resulting rows. A book already in the cart, or
+         * with a row written elsewhere, gets the quantity added to its row. Runs under the cart's
+         * stripe, so a pending set or remove of the same line cannot be flushed around it.
+         * @return the resulting lines, in the order given
+         */
+        public List<Line> add(List<NewLine> newLines) {
+            Map<Long, Stored> rows = newLines.size() == 1 ? upsert(newLines.get(0)) : upsertAll(newLines);
+            return merge(newLines, rows);
+        }
+
+        /**
+         * Write new quantities of lines, removals (quantity zero) and added books in one
+         * transaction, and only then apply them to the cart. If any of it fails, neither the
+         * cart nor the table is changed.
+         * @param quantities - new quantity by line, zero to remove it
+         */
+        public void apply(Map<Line, Integer> quantities, List<NewLine> newLines) {
+            if (quantities.isEmpty() && newLines.isEmpty()) {
+                return;
+            }
+            Map<Long, Integer> changes = new HashMap<>();
+            quantities.forEach((line, quantity) -> changes.put(line.id, quantity));
+            Map<Long, Stored> rows = new HashMap<>();
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!writeChanges(changes).isEmpty()) {
+                    throw new RuntimeException("Cart item not found");
+                }
+                if (!newLines.isEmpty()) {
+                    rows.putAll(upsertRows(newLines));
+                }
+            });
+
+            quantities.forEach((line, quantity) -> {
+                // Written just now, so an older pending change for the line is obsolete
+                if (pending.remove(line.id) != null) {
+                    pendingChanges.decrementAndGet();
+                }
+                if (quantity == 0) {
+                    lines.remove(line.bookId);
+                    userByLine.remove(line.id);
+                } else {
+                    line.quantity = quantity;
+                }
+            });
+            if (!newLines.isEmpty()) {
+                merge(newLines, rows);
+            }
+        }
+
+        /**
+         * Bring the cart in line with the rows the given books were upserted into
+         */
+        private List<Line> merge(List<NewLine> newLines, Map<Long, Stored> rows) {
+            List<Line> added = new ArrayList<>(newLines.size());
+            for (NewLine newLine : newLines) {
+                Stored row = rows.get(newLine.bookId());
+                Line existing = lines.get(newLine.bookId());
+                if (existing != null && existing.id.equals(row.id())) {
+                    existing.quantity += newLine.quantity();
+                    // A pending quantity would overwrite the row, so it has to include the increment
+                    if (pending.containsKey(existing.id)) {
+                        change(existing.id, existing.quantity);
+                    }
+                    added.add(existing);
+                    continue;
+                }
+                if (existing != null) {
+                    // Its row was deleted elsewhere and the upsert inserted a new one
+                    lines.remove(existing.bookId);
+                    userByLine.remove(existing.id);
+                }
+                int quantity = row.quantity();
+                if (quantity != newLine.quantity() && removedIds.remove(row.id())) {
+                    // The row of a line removed here whose delete is still pending; write the
+                    // new quantity instead
+                    quantity = newLine.quantity();
+                    change(row.id(), quantity);
+                }
+                Line line = new Line(row.id(), newLine.bookId(), newLine.bookName(), newLine.authorName(),
+                        newLine.imagePath(), newLine.price(), quantity);
+                LinkedHashMap<Long, Line> previous = new LinkedHashMap<>(lines);
+                lines.clear();
+                lines.put(line.bookId, line);
+                lines.putAll(previous);
+                userByLine.put(line.id, userId);
+                added.add(line);
+            }
+            return added;
+        }
+
+        public void setQuantity(Line line, int quantity) {
+            line.quantity = quantity;
+            change(line.id, quantity);
+        }
+
+        public void remove(Line line) {
+            lines.remove(line.bookId);
+            userByLine.remove(line.id);
+            removedIds.add(line.id);
+            change(line.id, 0);
+        }
+
+        public void clear() {
+            for (Line line : new ArrayList<>(lines.values())) {
+                remove(line);
+            }
+        }
+
+        public int size() {
+            return lines.size();
+        }
+
+        public List<CartItemDto> items() {
+            List<CartItemDto> items = new ArrayList<>(lines.size());
+            for (Line line : lines.values()) {
+                items.add(line.toDto());
+            }
+            return items;
+        }
+
+        public CartViewDto view() {
+            return new CartViewDto(items(), total());
+        }
+
+        public BigDecimal total() {
+            BigDecimal total = BigDecimal.ZERO;
+            for (Line line : lines.values()) {
+                total = total.add(line.subtotal());
+            }
+            return total;
+        }
+
+        private void change(Long lineId, int quantity) {
+            if (pending.put(lineId, quantity) == null) {
+                pendingChanges.incrementAndGet();
+            }
+            dirtyUsers.add(userId);
+        }
+
+        /**
+         * Upsert one line in a single round trip; only a hit on a row the cart does not know
+         * needs its quantity read back
+         */
+        private Map<Long, Stored> upsert(NewLine line) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            KeyHolder key = new GeneratedKeyHolder();
+            int affected = jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(UPSERT_LINE, Statement.RETURN_GENERATED_KEYS);
+                setUpsert(ps, line, now);
+                return ps;
+            }, key);
+            // The driver may report a second key for an updated row; the first is its id
+            long id = ((Number) key.getKeyList().get(0).values().iterator().next()).longValue();
+            Line existing = lines.get(line.bookId());
+            // MySQL reports one affected row for an insert and two for an update
+            int quantity = affected == 1 ? line.quantity()
+                    : existing != null && existing.id == id ? existing.quantity + line.quantity()
+                    : jdbcTemplate.queryForObject("select quantity from cart_items where id = ?", Integer.class, id);
+            return Map.of(line.bookId(), new Stored(id, quantity));
+        }
+
+        private Map<Long, Stored> upsertAll(List<NewLine> newLines) {
+            return transactionTemplate.execute(status -> upsertRows(newLines));
+        }
+
+        /**
+         * Upsert lines in one batch in the current transaction, then read the resulting rows
+         */
+        private Map<Long, Stored> upsertRows(List<NewLine> newLines) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            Map<Long, Stored> rows = new HashMap<>();
+            jdbcTemplate.batchUpdate(UPSERT_LINE, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setUpsert(ps, newLines.get(i), now);
+                }
+                
+                @Override
+                public int getBatchSize() {
+                    return newLines.size();
+                }
+            });
+            jdbcTemplate.query("select id, book_id, quantity from cart_items where user_id = ?",
+                    (RowCallbackHandler) rs -> rows.put(rs.getLong(2), new Stored(rs.getLong(1), rs.getInt(3))),
+                    userId);
+            return rows;
+        }
+
+        private void setUpsert(PreparedStatement ps, NewLine line, Timestamp now) throws SQLException {
+            ps.setLong(1, userId);
+            ps.setLong(2, line.bookId());
+            ps.setInt(3, line.quantity());
+            ps.setBigDecimal(4, line.price());
+            ps.setTimestamp(5, now);
+            ps.setInt(6, line.quantity());
+        }
+    }
+
+    /**
+     * A book to add to a cart with the quantity to add
+     */
+    public record NewLine(Long bookId, String bookName, String authorName, String imagePath,
+                          BigDecimal price, int quantity) {
+    }
+
+    /**
+     * Id and quantity of a cart_items row after an upsert
+     */
+    private record Stored(long id, int quantity) {
+    }
+
+    /**
+     * A cart line with the book details shown for it
+     */
+    public static final class Line {
+        private final Long id;
+        private final Long bookId;
+        private final String bookName;
+        private final String authorName;
+        private final String imagePath;
+        private final BigDecimal priceAtAddition;
+        private int quantity;
+
+        public Line(Long id, Long bookId, String bookName, String authorName, String imagePath,
+                    BigDecimal priceAtAddition, int quantity) {
+            this.id = id;
+            this.bookId = bookId;
+            this.bookName = bookName;
+            this.authorName = authorName;
+            this.imagePath = imagePath;
+            this.priceAtAddition = priceAtAddition;
+            this.quantity = quantity;
+        }
+
+        public Long getBookId() {
+            return bookId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal subtotal() {
+            return priceAtAddition.multiply(BigDecimal.valueOf(quantity));
+        }
+
+        public CartItemDto toDto() {
+            return new CartItemDto(id, bookId, bookName, authorName, imagePath, priceAtAddition, quantity, subtotal());
+        }
+    }
+}
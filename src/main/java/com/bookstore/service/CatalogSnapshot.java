@@ -0,0 +1,507 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookSummary;
+import com.bookstore.repository.BookRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Binary copy of the catalog's list columns in a memory-mapped file, so a freshly started
+ * instance can serve book listings before MySQL and the caches are warm.
+ * Books written since the snapshot are patched in from the database after their commit and
+ * merged into listings; only while a write is in flight are listings read from the database.
+ * Every snapshot goes to a new file, so a mapped file is never replaced (which Windows does
+ * not allow); older files are deleted once no longer mapped.
+ */
+@Slf4j
+@Component
+public class CatalogSnapshot {
+
+    // "BKS1"
+    private static final int MAGIC = 0x424B5331;
+    private static final byte RECORD = 1;
+    private static final byte END = 0;
+    private static final int ID_CHUNK = 1000;
+
+    // Snapshot files are the base name plus "." and the time they were written
+    private final Path directory;
+    private final String baseName;
+    private final long intervalMs;
+    private final BookRepository bookRepository;
+    private final BookCatalogCache bookCatalogCache;
+    private final CatalogVersion catalogVersion;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Snapshot current;
+    private long lastWritten;
+    // Latest state of books changed since the snapshot, by id; a null book was deleted
+    private final TreeMap<Long, Patch> patches = new TreeMap<>();
+    // Books with a write in flight, with the number of transactions writing them
+    private final Map<Long, Integer> writing = new HashMap<>();
+    // Bumped on every patch and invalidation, so a snapshot knows which patches it includes
+    private long changes;
+    private long invalidatedAt = -1;
+
+    public CatalogSnapshot(@Value("${bookstore.snapshot.path:data/catalog.snapshot}") String path,
+                           @Value("${bookstore.snapshot.interval-ms:600000}") long intervalMs,
+                           BookRepository bookRepository,
+                           BookCatalogCache bookCatalogCache,
+                           CatalogVersion catalogVersion,
+                           PlatformTransactionManager transactionManager) {
+        Path base = Paths.get(path).toAbsolutePath();
+        this.directory = base.getParent();
+        this.baseName = base.getFileName().toString();
+        this.intervalMs = intervalMs;
+        this.bookRepository = bookRepository;
+        this.bookCatalogCache = bookCatalogCache;
+        this.catalogVersion = catalogVersion;
+        // Patches are read after the writing transaction committed, on a connection of their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Map the newest snapshot left by the previous run, if there is a usable one
+     */
+    @PostConstruct
+    public void load() {
+        Path newest = snapshotFiles().stream().max(Comparator.comparingLong(this::writtenAt)).orElse(null);
+        if (newest == null) {
+            return;
+        }
+        try {
+            current = Snapshot.map(newest);
+            lastWritten = writtenAt(newest);
+            log.info("Catalog snapshot with {} books mapped from {}", current.ids.length, newest);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable catalog snapshot {}: {}", newest, e.getMessage());
+        }
+    }
+
+    /**
+     * Compare the snapshot with the database in the background once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (current == null) {
+            return;
+        }
+        Thread thread = new Thread(this::reconcile, "catalog-snapshot-reconcile");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Patch in the books changed after the snapshot was written, or added or deleted since
+     */
+    void reconcile() {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            Set<Long> changed = new HashSet<>(bookRepository.findIdsUpdatedAfter(snapshot.newestUpdate));
+            // Both id lists are in ascending order
+            List<Long> ids = bookRepository.findAllIds();
+            int i = 0;
+            int j = 0;
+            while (i < snapshot.ids.length || j < ids.size()) {
+                long snapshotId = i < snapshot.ids.length ? snapshot.ids[i] : Long.MAX_VALUE;
+                long id = j < ids.size() ? ids.get(j) : Long.MAX_VALUE;
+                if (snapshotId == id) {
+                    i++;
+                    j++;
+                } else if (snapshotId < id) {
+                    changed.add(snapshotId);
+                    i++;
+                } else {
+                    changed.add(id);
+                    j++;
+                }
+            }
+            if (!changed.isEmpty()) {
+                patch(changed);
+                bookCatalogCache.evictAll();
+                catalogVersion.catalogChanged();
+            }
+            log.info("Catalog snapshot reconciled: {} of {} books changed since it was written",
+                    changed.size(), snapshot.ids.length);
+        } catch (RuntimeException e) {
+            log.error("Failed to reconcile the catalog snapshot, no longer serving from it", e);
+            invalidate();
+        }
+    }
+
+    /**
+     * All books in the snapshot with the patches merged in, or null when listings cannot be
+     * served from it
+     */
+    public List<BookSummary> readAll(boolean availableOnly) {
+        Snapshot snapshot;
+        List<Patch> patched;
+        synchronized (this) {
+            snapshot = current;
+            if (snapshot == null || !writing.isEmpty()) {
+                return null;
+            }
+            patched = new ArrayList<>(patches.values());
+        }
+        ByteBuffer buffer = snapshot.buffer.duplicate();
+        List<BookSummary> books = new ArrayList<>(snapshot.ids.length + patched.size());
+        int next = 0;
+        for (int i = 0; i < snapshot.ids.length; i++) {
+            long id = snapshot.ids[i];
+            while (next < patched.size() && patched.get(next).id() < id) {
+                addBook(books, patched.get(next++).book(), availableOnly);
+            }
+            if (next < patched.size() && patched.get(next).id() == id) {
+                addBook(books, patched.get(next++).book(), availableOnly);
+                continue;
+            }
+            buffer.position(snapshot.offsets[i]);
+            addBook(books, readBook(buffer), availableOnly);
+        }
+        while (next < patched.size()) {
+            addBook(books, patched.get(next++).book(), availableOnly);
+        }
+        return books;
+    }
+
+    /**
+     * A book is being added, changed or removed. Listings come from the database until the
+     * current transaction completes; after a commit the book is read again and patched in.
+     */
+    public void bookChanged(Long id) {
+        synchronized (this) {
+            writing.merge(id, 1, Integer::sum);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            settle(id, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                settle(id, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * Stop serving from the snapshot, for changes that touch many books at once, now and
+     * again after the current transaction commits; the next scheduled check writes a new one
+     */
+    public void invalidate() {
+        Runnable invalidation = () -> {
+            synchronized (this) {
+                current = null;
+                patches.clear();
+                invalidatedAt = ++changes;
+            }
+        };
+        invalidation.run();
+        AfterCommit.run(invalidation);
+    }
+
+    /**
+     * Whether a new snapshot should be written: there is none, or the current one is older
+     * than the snapshot interval
+     */
+    public synchronized boolean isDue() {
+        return current == null || System.currentTimeMillis() - lastWritten >= intervalMs;
+    }
+
+    /**
+     * Change count to pass to {@link #write}, taken before reading the books
+     */
+    public synchronized long changeCount() {
+        return changes;
+    }
+
+    /**
+     * Write a new snapshot to a new file and serve from it, keeping the patches made after the
+     * books were read; unless the snapshot was invalidated meanwhile
+     * @param books - every book, in ascending id order
+     * @param changeCount - {@link #changeCount()} from before the books were read
+     */
+    public void write(Iterator<BookSummary> books, long changeCount) throws IOException {
+        Files.createDirectories(directory);
+        long now = System.currentTimeMillis();
+        Path file = directory.resolve(baseName + "." + now);
+        Path temp = directory.resolve(baseName + ".tmp");
+        long count = 0;
+        LocalDateTime newestUpdate = LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            while (books.hasNext()) {
+                BookSummary book = books.next();
+                out.writeByte(RECORD);
+                writeBook(out, book);
+                if (book.updatedAt().isAfter(newestUpdate)) {
+                    newestUpdate = book.updatedAt();
+                }
+                count++;
+            }
+            out.writeByte(END);
+            out.writeLong(count);
+            writeTime(out, newestUpdate);
+        }
+        synchronized (this) {
+            if (invalidatedAt > changeCount) {
+                // Read before a bulk change; the next check writes a current one
+                Files.delete(temp);
+                return;
+            }
+        }
+        // The target name is new, so nothing mapped is replaced
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+
+        Snapshot snapshot = Snapshot.map(file);
+        synchronized (this) {
+            if (invalidatedAt > changeCount) {
+                return;
+            }
+            current = snapshot;
+            lastWritten = now;
+            // Patches made before the books were read are in the snapshot
+            patches.values().removeIf(patch -> patch.seq() <= changeCount);
+        }
+        log.debug("Catalog snapshot with {} books written to {}", count, file);
+        deleteOlderThan(file);
+    }
+
+    /**
+     * A write of a book completed; after a commit read its new state and patch it in
+     */
+    private void settle(Long id, boolean committed) {
+        try {
+            if (committed) {
+                patch(List.of(id));
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to patch book {} into the catalog snapshot, no longer serving from it", id, e);
+            invalidate();
+        } finally {
+            synchronized (this) {
+                writing.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+    }
+
+    /**
+     * Read the current state of the books and record it as patches; books not found were deleted
+     */
+    private void patch(Collection<Long> ids) {
+        Map<Long, BookSummary> books = new HashMap<>();
+        List<Long> all = new ArrayList<>(ids);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < all.size(); from += ID_CHUNK) {
+                for (BookSummary book : bookRepository.findSummariesByIdIn(
+                        all.subList(from, Math.min(all.size(), from + ID_CHUNK)))) {
+                    books.put(book.id(), book);
+                }
+            }
+        });
+        synchronized (this) {
+            long seq = ++changes;
+            for (Long id : all) {
+                patches.put(id, new Patch(id, seq, books.get(id)));
+            }
+        }
+    }
+
+    private static void addBook(List<BookSummary> books, BookSummary book, boolean availableOnly) {
+        if (book != null && (!availableOnly || Boolean.TRUE.equals(book.available()))) {
+            books.add(book);
+        }
+    }
+
+    private List<Path> snapshotFiles() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> writtenAt(file) >= 0).toList();
+        } catch (IOException e) {
+            log.warn("Failed to list catalog snapshots in {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Time a snapshot file was written, from its name, or -1 if it is not a snapshot file
+     */
+    private long writtenAt(Path file) {
+        String name = file.getFileName().toString();
+        String prefix = baseName + ".";
+        if (!name.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Delete older snapshot files. One that is still mapped, by a listing in progress or until
+     * its buffer is collected, cannot be deleted on Windows; it is retried after the next write.
+     */
+    private void deleteOlderThan(Path file) {
+        long newest = writtenAt(file);
+        List<Path> files = new ArrayList<>(snapshotFiles());
+        // The single file written before snapshots were timestamped
+        files.add(directory.resolve(baseName));
+        for (Path old : files) {
+            if (writtenAt(old) < newest) {
+                try {
+                    Files.deleteIfExists(old);
+                } catch (IOException e) {
+                    log.debug("Catalog snapshot {} not deleted yet: {}", old, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void writeBook(DataOutputStream out, BookSummary book) throws IOException {
+        out.writeLong(book.id());
+        writeString(out, book.bookId());
+        writeString(out, book.bookName());
+        writeString(out, book.authorName());
+        out.writeLong(BookPriceIndex.toCents(book.price()));
+        out.writeBoolean(Boolean.TRUE.equals(book.available()));
+        writeString(out, book.imagePath());
+        writeTime(out, book.createdAt());
+        writeTime(out, book.updatedAt());
+    }
+
+    private static BookSummary readBook(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        String bookId = readString(buffer);
+        String bookName = readString(buffer);
+        String authorName = readString(buffer);
+        BigDecimal price = BigDecimal.valueOf(buffer.getLong(), 2);
+        boolean available = buffer.get() != 0;
+        String imagePath = readString(buffer);
+        LocalDateTime createdAt = readTime(buffer);
+        LocalDateTime updatedAt = readTime(buffer);
+        return new BookSummary(id, bookId, bookName, price, authorName, imagePath, available, createdAt, updatedAt);
+    }
+
+    /**
+     * Length-prefixed UTF-8, with -1 for null
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        return LocalDateTime.ofEpochSecond(seconds, buffer.getInt(), ZoneOffset.UTC);
+    }
+
+    private record Patch(long id, long seq, BookSummary book) {
+    }
+
+    /**
+     * A mapped snapshot file with the offset of every book's record, in id order
+     */
+    private static final class Snapshot {
+        final MappedByteBuffer buffer;
+        final long[] ids;
+        final int[] offsets;
+        final LocalDateTime newestUpdate;
+
+        private Snapshot(MappedByteBuffer buffer, long[] ids, int[] offsets, LocalDateTime newestUpdate) {
+            this.buffer = buffer;
+            this.ids = ids;
+            this.offsets = offsets;
+            this.newestUpdate = newestUpdate;
+        }
+
+        static Snapshot map(Path path) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot larger than 2 GB");
+                }
+                // The mapping stays valid after the channel is closed
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a catalog snapshot");
+            }
+            long[] ids = new long[1024];
+            int[] offsets = new int[1024];
+            int count = 0;
+            // Truncated files fail here with a BufferUnderflowException
+            while (buffer.get() == RECORD) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count] = buffer.position();
+                BookSummary book = readBook(buffer);
+                if (count > 0 && book.id() <= ids[count - 1]) {
+                    throw new IOException("Snapshot is not in id order");
+                }
+                ids[count++] = book.id();
+            }
+            if (buffer.getLong() != count) {
+                throw new IOException("Snapshot record count mismatch");
+            }
+            LocalDateTime newestUpdate = readTime(buffer);
+            return new Snapshot(buffer, Arrays.copyOf(ids, count), Arrays.copyOf(offsets, count), newestUpdate);
+        }
+    }
+}
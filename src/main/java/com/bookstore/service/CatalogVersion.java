@@ -0,0 +1,76 @@
+package com.bookstore.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Version of the catalog as a whole and of single books, for ETags and conditional GETs.
+ * The catalog version goes up after every committed write; a book's stamp is the updatedAt of
+ * its cached copy, so a conditional request for a cached book needs no database access.
+ * Last-Modified only has whole seconds, so every change moves the catalog's last-modified time
+ * to a later second than any it was at before; a write in the same second as an earlier
+ * response then still fails an If-Modified-Since check.
+ */
+@Component
+public class CatalogVersion {
+
+    // Starts at the startup time so versions handed out before a restart are not reused
+    private long version = System.currentTimeMillis();
+    private long lastModified = nextSecond(version - 1);
+
+    /**
+     * The catalog version and when it last changed
+     */
+    public synchronized Version current() {
+        return new Version(version, lastModified);
+    }
+
+    /**
+     * One or more books were added, changed or removed; takes effect when the current
+     * transaction commits
+     */
+    public void catalogChanged() {
+        AfterCommit.run(this::change);
+    }
+
+    /**
+     * Listings served from a freshly built index can differ from before, e.g. gain facets
+     */
+    @EventListener
+    public void indexesRebuilt(BookIndexManager.IndexesRebuilt event) {
+        change();
+    }
+
+    /**
+     * Stamp of a book: its updatedAt in epoch milliseconds
+     */
+    public static long bookStamp(LocalDateTime updatedAt) {
+        return updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static String bookETag(Long id, long stamp) {
+        return "\"" + id + "-" + stamp + "\"";
+    }
+
+    private synchronized void change() {
+        version++;
+        lastModified = nextSecond(Math.max(lastModified, System.currentTimeMillis() - 1));
+    }
+
+    /**
+     * The first whole second after the given time
+     */
+    private static long nextSecond(long millis) {
+        return (Math.floorDiv(millis, 1000) + 1) * 1000;
+    }
+
+    public record Version(long value, long lastModified) {
+
+        public String eTag() {
+            return "\"" + value + "\"";
+        }
+    }
+}
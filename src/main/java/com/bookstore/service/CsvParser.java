@@ -0,0 +1,115 @@
+package com.bookstore.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * RFC 4180 CSV: comma separated, fields optionally quoted with "" as an escaped quote.
+ * Reads one record at a time, so files of any size can be processed as a stream.
+ */
+final class CsvParser implements Closeable {
+
+    private final BufferedReader reader;
+
+    CsvParser(InputStream input) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fields of the next record that is not blank, or null at the end of the stream
+     */
+    List<String> next() throws IOException {
+        List<String> fields;
+        do {
+            fields = readRecord();
+        } while (fields != null && fields.size() == 1 && fields.get(0).isBlank());
+        return fields;
+    }
+
+    /**
+     * Column positions by header name, ignoring case and punctuation (bookId, book_id, Book Id)
+     * @param required - normalized names that must be present
+     */
+    Map<String, Integer> readHeader(List<String> required) throws IOException {
+        List<String> header = next();
+        if (header == null) {
+            throw new RuntimeException("CSV header row is missing");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", ""), i);
+        }
+        for (String column : required) {
+            if (!columns.containsKey(column)) {
+                throw new RuntimeException("CSV header has no " + column + " column");
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Value of a column in a record, or null when it is missing or empty
+     */
+    static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size() || fields.get(index).isEmpty()) {
+            return null;
+        }
+        return fields.get(index);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Fields of the next record, which may span lines inside quotes; null at the end of the stream
+     */
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field in CSV");
+                }
+                if (c == '"') {
+                    int next = reader.read();
+                    if (next != '"') {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == -1 || c == '\n') {
+                break;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r' && c != '\uFEFF') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -25,6 +25,9 @@ public class FeedbackService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private PrincipalCache principalCache;
+    
     @Transactional
     public Feedback createFeedback(Long orderId, String username, Integer rating, 
                                    String feedbackMessage, Boolean deliveryConfirmed) {
@@ -33,10 +36,7 @@ public class FeedbackService {
             throw new RuntimeException("Order not found");
         }
         
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (!userOpt.isPresent()) {
-            throw new RuntimeException("User not found");
-        }
+        Long userId = principalCache.idOf(username);
         
         Order order = orderOpt.get();
         
@@ -52,7 +52,7 @@ public class FeedbackService {
         
         Feedback feedback = new Feedback();
         feedback.setOrder(order);
-        feedback.setUser(userOpt.get());
+        feedback.setUser(userRepository.getReferenceById(userId));
         feedback.setRating(rating);
         feedback.setFeedbackMessage(feedbackMessage);
         feedback.setDeliveryConfirmed(deliveryConfirmed);
@@ -22,6 +22,9 @@ public class OrderInquiryService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private PrincipalCache principalCache;
+    
     @Transactional
     public OrderInquiry createInquiry(Long orderId, String username, String inquiryMessage) {
         Optional<Order> orderOpt = orderRepository.findById(orderId);
@@ -29,14 +32,11 @@ public class OrderInquiryService {
             throw new RuntimeException("Order not found");
         }
         
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (!userOpt.isPresent()) {
-            throw new RuntimeException("User not found");
-        }
+        Long userId = principalCache.idOf(username);
         
         OrderInquiry inquiry = new OrderInquiry();
         inquiry.setOrder(orderOpt.get());
-        inquiry.setUser(userOpt.get());
+        inquiry.setUser(userRepository.getReferenceById(userId));
         inquiry.setInquiryMessage(inquiryMessage);
         
         return orderInquiryRepository.save(inquiry);
@@ -25,17 +25,24 @@ public class OrderService {
     @Autowired
     private UserRepository userRepository;
     
+    @Autowired
+    private BookSuggestIndex bookSuggestIndex;
+    
+    @Autowired
+    private CartStore cartStore;
+    
+    @Autowired
+    private PrincipalCache principalCache;
+    
     @Transactional
     public Order createOrder(String username, String deliveryAddress, String deliveryCity, 
                             String deliveryPostalCode, String deliveryPhone,
                             String cardNumber, String cardHolderName) {
         
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (!userOpt.isPresent()) {
-            throw new RuntimeException("User not found");
-        }
-        
-        User user = userOpt.get();
+        // A reference is enough to link the order; the users row is not read
+        User user = userRepository.getReferenceById(principalCache.idOf(username));
+        // The cart store writes changes behind; this writes them and holds the cart until commit
+        cartStore.lockForCheckout(user.getId());
         List<CartItem> cartItems = cartItemRepository.findByUser(user);
         
         if (cartItems.isEmpty()) {
@@ -72,6 +79,11 @@ public class OrderService {
             orderItem.setQuantity(cartItem.getQuantity());
             orderItem.setPrice(cartItem.getBook().getPrice());
             orderItemRepository.save(orderItem);
+            
+            // Sales drive the popularity of search suggestions
+            Long bookId = cartItem.getBook().getId();
+            int quantity = cartItem.getQuantity();
+            AfterCommit.run(() -> bookSuggestIndex.recordSale(bookId, quantity));
         }
         
         // Clear cart after order
@@ -81,11 +93,8 @@ public class OrderService {
     }
     
     public List<Order> getUserOrders(String username) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (!userOpt.isPresent()) {
-            throw new RuntimeException("User not found");
-        }
-        return orderRepository.findByUserOrderByOrderDateDesc(userOpt.get());
+        User user = userRepository.getReferenceById(principalCache.idOf(username));
+        return orderRepository.findByUserOrderByOrderDateDesc(user);
     }
     
     public List<Order> getAllOrders() {
@@ -0,0 +1,106 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.UserSummary;
+import com.bookstore.model.User;
+import com.bookstore.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through cache from username to the user's id and profile, so turning the authenticated
+ * username into a user does not query the users table on every request. Filled at login,
+ * bounded by entry count and evicted least recently used first. Only active users are held;
+ * a deactivated or deleted user is evicted and no longer resolves.
+ */
+@Component
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final int maxEntries;
+    private final LinkedHashMap<String, UserSummary> entries;
+    // Bumped on every invalidation so loads that started before it are not cached
+    private long generation;
+
+    public PrincipalCache(UserRepository userRepository,
+                          @Value("${bookstore.principal-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserSummary> eldest) {
+                return size() > PrincipalCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * The active user with this username, from the cache or the database
+     */
+    public Optional<UserSummary> find(String username) {
+        long loadGeneration;
+        synchronized (this) {
+            UserSummary user = entries.get(username);
+            if (user != null) {
+                return Optional.of(user);
+            }
+            loadGeneration = generation;
+        }
+        Optional<UserSummary> user = userRepository.findActiveSummaryByUsername(username);
+        user.ifPresent(summary -> {
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    entries.put(username, summary);
+                }
+            }
+        });
+        return user;
+    }
+
+    /**
+     * Id of the user with this username
+     */
+    public Long idOf(String username) {
+        return find(username)
+                .orElseThrow(() -> new RuntimeException("User not found"))
+                .id();
+    }
+
+    /**
+     * Current invalidation count, to be taken before loading a user that is then {@link #put}
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Remember a user that was just loaded, e.g. to log in, unless it was invalidated or
+     * deactivated since
+     * @param loadGeneration - {@link #generation()} from before the user was loaded
+     */
+    public synchronized void put(User user, long loadGeneration) {
+        if (loadGeneration != generation || !Boolean.TRUE.equals(user.getActive())) {
+            return;
+        }
+        entries.put(user.getUsername(), new UserSummary(user.getId(), user.getUsername(), user.getEmail(),
+                user.getFullName(), user.getPhoneNumber(), user.getAddress(), user.getRole(), user.getActive(),
+                user.getCreatedAt(), user.getUpdatedAt()));
+    }
+
+    /**
+     * Drop a user whose profile or status changed, now and again once the current transaction commits
+     */
+    public void evict(String username) {
+        Runnable eviction = () -> {
+            synchronized (this) {
+                generation++;
+                entries.remove(username);
+            }
+        };
+        eviction.run();
+        AfterCommit.run(eviction);
+    }
+}
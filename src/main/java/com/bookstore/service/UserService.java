@@ -17,6 +17,7 @@ public class UserService {
     
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
     
     /**
      * Register a new user
@@ -52,6 +53,7 @@ public class UserService {
      * Authenticate user login
      */
     public UserResponseDto loginUser(UserLoginDto loginDto) {
+        long cacheGeneration = principalCache.generation();
         User user = userRepository.findByUsernameAndActiveTrue(loginDto.getUsername())
                 .orElseThrow(() -> new RuntimeException("Invalid username or password"));
         
@@ -59,6 +61,7 @@ public class UserService {
             throw new RuntimeException("Invalid username or password");
         }
         
+        principalCache.put(user, cacheGeneration);
         return convertToResponseDto(user);
     }
     
@@ -66,7 +69,7 @@ public class UserService {
      * Get user by ID
      */
     public UserResponseDto getUserById(Long id) {
-        User user = userRepository.findById(id)
+        UserSummary user = userRepository.findSummaryById(id)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         return convertToResponseDto(user);
     }
@@ -75,7 +78,7 @@ public class UserService {
      * Get user by username
      */
     public UserResponseDto getUserByUsername(String username) {
-        User user = userRepository.findByUsername(username)
+        UserSummary user = principalCache.find(username)
                 .orElseThrow(() -> new RuntimeException("User not found with username: " + username));
         return convertToResponseDto(user);
     }
@@ -84,7 +87,7 @@ public class UserService {
      * Get all users (Admin only)
      */
     public List<UserResponseDto> getAllUsers() {
-        return userRepository.findAll().stream()
+        return userRepository.findAllSummaries().stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
@@ -111,6 +114,7 @@ public class UserService {
         user.setAddress(updateDto.getAddress());
         
         User updatedUser = userRepository.save(user);
+        principalCache.evict(updatedUser.getUsername());
         return convertToResponseDto(updatedUser);
     }
     
@@ -125,6 +129,7 @@ public class UserService {
         // Soft delete - set active to false
         user.setActive(false);
         userRepository.save(user);
+        principalCache.evict(user.getUsername());
     }
     
     /**
@@ -137,6 +142,7 @@ public class UserService {
         
         // Hard delete - remove from database
         userRepository.delete(user);
+        principalCache.evict(user.getUsername());
     }
     
     /**
@@ -170,4 +176,12 @@ public class UserService {
         dto.setUpdatedAt(user.getUpdatedAt());
         return dto;
     }
+    
+    /**
+     * Convert UserSummary projection to UserResponseDto
+     */
+    private UserResponseDto convertToResponseDto(UserSummary user) {
+        return new UserResponseDto(user.id(), user.username(), user.email(), user.fullName(),
+                user.phoneNumber(), user.address(), user.role(), user.active(), user.createdAt(), user.updatedAt());
+    }
 }
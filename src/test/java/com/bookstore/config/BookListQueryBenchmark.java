@@ -0,0 +1,122 @@
+package com.bookstore.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bytes and time per book list query with descriptions stored in the books rows (before
+ * {@link BookContentMigration}) and in book_contents (after). Not part of the regular test run:
+ * mvn test -Dtest=BookListQueryBenchmark with BOOKSTORE_TEST_DB_URL, BOOKSTORE_TEST_DB_USER and
+ * BOOKSTORE_TEST_DB_PASSWORD pointing at a scratch MySQL database.
+ */
+@EnabledIfEnvironmentVariable(named = "BOOKSTORE_TEST_DB_URL", matches = ".+")
+class BookListQueryBenchmark {
+
+    private static final int BOOKS = 20_000;
+    private static final int DESCRIPTION_LENGTH = 1500;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP = 200;
+    private static final int RUNS = 1000;
+    private static final String COLUMNS = "id, book_id, book_name, price, author_name, image_path, available, " +
+            "created_at, updated_at";
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createTables() {
+        // One connection, so session status counts only this benchmark's traffic
+        dataSource = new SingleConnectionDataSource(System.getenv("BOOKSTORE_TEST_DB_URL"),
+                System.getenv("BOOKSTORE_TEST_DB_USER"), System.getenv("BOOKSTORE_TEST_DB_PASSWORD"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        String columns = "id bigint primary key, book_id varchar(255) not null, book_name varchar(255) not null, " +
+                "price decimal(38, 2) not null, author_name varchar(255) not null, image_path varchar(500), " +
+                "available bit not null, created_at datetime(6) not null, updated_at datetime(6) not null, ";
+        jdbcTemplate.execute("drop table if exists bench_books_wide");
+        jdbcTemplate.execute("drop table if exists bench_books_narrow");
+        jdbcTemplate.execute("create table bench_books_wide (" + columns + "description varchar(2000), " +
+                "index (created_at, id))");
+        jdbcTemplate.execute("create table bench_books_narrow (" + columns + "content_id bigint, " +
+                "index (created_at, id))");
+
+        String description = "x".repeat(DESCRIPTION_LENGTH);
+        List<Object[]> wide = new ArrayList<>(BOOKS);
+        List<Object[]> narrow = new ArrayList<>(BOOKS);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (long id = 1; id <= BOOKS; id++) {
+            Timestamp createdAt = Timestamp.valueOf(start.plusMinutes(id));
+            Object[] row = {id, "B" + id, "Book " + id, id % 1000 + 0.99, "Author " + id % 500,
+                    "/uploads/" + id + ".jpg", true, createdAt, createdAt};
+            Object[] withDescription = Arrays.copyOf(row, row.length + 1);
+            withDescription[row.length] = description;
+            Object[] withContent = Arrays.copyOf(row, row.length + 1);
+            withContent[row.length] = id;
+            wide.add(withDescription);
+            narrow.add(withContent);
+        }
+        String values = "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.batchUpdate("insert into bench_books_wide (" + COLUMNS + ", description) " + values, wide);
+        jdbcTemplate.batchUpdate("insert into bench_books_narrow (" + COLUMNS + ", content_id) " + values, narrow);
+    }
+
+    @AfterEach
+    void dropTables() {
+        jdbcTemplate.execute("drop table if exists bench_books_wide");
+        jdbcTemplate.execute("drop table if exists bench_books_narrow");
+        dataSource.destroy();
+    }
+
+    @Test
+    void listQueryBeforeAndAfterMovingDescriptions() {
+        // The entity read before the move loaded every column, description included
+        Result before = measure("select " + COLUMNS + ", description from bench_books_wide " +
+                "order by created_at desc, id desc limit " + PAGE_SIZE + " offset ?");
+        Result after = measure("select " + COLUMNS + " from bench_books_narrow " +
+                "order by created_at desc, id desc limit " + PAGE_SIZE + " offset ?");
+
+        System.out.printf("list query, %d books per page%n", PAGE_SIZE);
+        System.out.printf("  before: %,d bytes, %.3f ms%n", before.bytes(), before.millis());
+        System.out.printf("  after:  %,d bytes, %.3f ms%n", after.bytes(), after.millis());
+    }
+
+    private Result measure(String sql) {
+        for (int i = 0; i < WARMUP; i++) {
+            query(sql, i);
+        }
+        long statusBytes = bytesSent() - bytesSent();
+        long bytesBefore = bytesSent();
+        long started = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            query(sql, i);
+        }
+        long elapsed = System.nanoTime() - started;
+        long bytes = bytesSent() - bytesBefore + statusBytes;
+        return new Result(bytes / RUNS, elapsed / 1e6 / RUNS);
+    }
+
+    private void query(String sql, int run) {
+        jdbcTemplate.queryForList(sql, run * PAGE_SIZE % (BOOKS - PAGE_SIZE));
+    }
+
+    /**
+     * Bytes the server has sent on this connection; the difference of two calls is negative the
+     * size of one status reply
+     */
+    private long bytesSent() {
+        return jdbcTemplate.queryForObject("show session status like 'Bytes_sent'",
+                (rs, i) -> rs.getLong("Value"));
+    }
+
+    private record Result(long bytes, double millis) {
+    }
+}
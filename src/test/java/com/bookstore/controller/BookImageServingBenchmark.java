@@ -0,0 +1,170 @@
+package com.bookstore.controller;
+
+import com.bookstore.repository.BookRepository;
+import com.bookstore.service.BookImageCache;
+import com.bookstore.service.BookImageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Requests per second for uploaded images served by {@link BookImageController} and by the
+ * file:uploads/ resource handler it replaced, both in one embedded Tomcat, for a file small
+ * enough for the image cache and one sent with sendfile. Security filters are not installed
+ * for either; both serve from a temporary upload directory. Not part of the regular test run:
+ * mvn test -Dtest=BookImageServingBenchmark
+ */
+class BookImageServingBenchmark {
+
+    private static final int CLIENTS = 8;
+    private static final long WARMUP_MS = 5_000;
+    private static final int ROUNDS = 4;
+    private static final long ROUND_MS = 3_000;
+
+    @TempDir
+    Path uploadDir;
+    private WebServer server;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new TomcatServletWebServerFactory(0).getWebServer(servletContext -> {
+            AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                    Map.of("bookstore.images.upload-dir", uploadDir.toString())));
+            context.register(ImageConfig.class);
+            servletContext.addServlet("dispatcher", new DispatcherServlet(context)).addMapping("/");
+        });
+        server.start();
+        // The dispatcher servlet is initialised by its first request, outside the measurements
+        HttpClient.newHttpClient().send(request("/"), HttpResponse.BodyHandlers.discarding());
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void imageHandlerAgainstResourceHandler() throws Exception {
+        String small = createImage(32 * 1024);
+        String large = createImage(2 * 1024 * 1024);
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(CLIENTS)).build();
+
+        System.out.printf("image requests per second, %d clients%n", CLIENTS);
+        for (String file : List.of(small, large)) {
+            HttpRequest handler = request("/uploads/books/" + file);
+            HttpRequest resources = request("/old/uploads/books/" + file);
+            run(client, handler, WARMUP_MS);
+            run(client, resources, WARMUP_MS);
+            // Alternated, so neither side is favoured by what the JIT has compiled by then
+            long handlerRequests = 0;
+            long resourceRequests = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                handlerRequests += run(client, handler, ROUND_MS);
+                resourceRequests += run(client, resources, ROUND_MS);
+            }
+            double seconds = ROUNDS * ROUND_MS / 1000.0;
+            System.out.printf("  %,9d bytes: image handler %,8.0f/s, resource handler %,8.0f/s%n",
+                    Files.size(uploadDir.resolve(file)), handlerRequests / seconds, resourceRequests / seconds);
+        }
+    }
+
+    private String createImage(int size) throws Exception {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        String name = UUID.randomUUID() + ".jpg";
+        Files.write(uploadDir.resolve(name), bytes);
+        return name;
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+    }
+
+    /**
+     * Requests completed by the clients within the given time
+     */
+    private long run(HttpClient client, HttpRequest request, long millis) throws Exception {
+        AtomicLong completed = new AtomicLong();
+        long until = System.currentTimeMillis() + millis;
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            running.add(clients.submit(() -> {
+                while (System.currentTimeMillis() < until) {
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    assertThat(response.statusCode()).isEqualTo(200);
+                    completed.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> finished : running) {
+            finished.get();
+        }
+        clients.shutdown();
+        return completed.get();
+    }
+
+    @Configuration
+    @EnableWebMvc
+    static class ImageConfig implements WebMvcConfigurer {
+
+        @Value("${bookstore.images.upload-dir}")
+        private String uploadDir;
+
+        @Bean
+        BookImageCache bookImageCache() {
+            return new BookImageCache(64 * 1024 * 1024, 1024 * 1024);
+        }
+
+        @Bean
+        BookImageService bookImageService(BookImageCache bookImageCache) {
+            return new BookImageService(mock(BookRepository.class), bookImageCache, 1, 1, Long.MAX_VALUE, uploadDir);
+        }
+
+        @Bean
+        BookImageController bookImageController(BookImageService bookImageService, BookImageCache bookImageCache) {
+            return new BookImageController(bookImageService, bookImageCache);
+        }
+
+        /**
+         * The resource handler that served uploads before the image handler
+         */
+        @Override
+        public void addResourceHandlers(ResourceHandlerRegistry registry) {
+            registry.addResourceHandler("/old/uploads/books/**")
+                    .addResourceLocations(Paths.get(uploadDir).toUri().toString());
+        }
+    }
+}
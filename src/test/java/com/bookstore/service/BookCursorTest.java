@@ -0,0 +1,46 @@
+package com.bookstore.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BookCursorTest {
+
+    @Test
+    void tokensRoundTrip() {
+        BookCursor price = BookCursor.decode(BookCursor.afterPrice(true, new BigDecimal("12.50"), 42).encode());
+        assertThat(price.getKind()).isEqualTo(BookCursor.Kind.PRICE_DESC);
+        assertThat(price.getPrice()).isEqualByComparingTo("12.50");
+        assertThat(price.getId()).isEqualTo(42);
+
+        LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 30, 15, 123_000_000);
+        BookCursor created = BookCursor.decode(BookCursor.afterCreated(createdAt, 7).encode());
+        assertThat(created.getKind()).isEqualTo(BookCursor.Kind.CREATED);
+        assertThat(created.getCreatedAt()).isEqualTo(createdAt);
+
+        assertThat(BookCursor.decode(BookCursor.atOffset(40).encode()).getOffset()).isEqualTo(40);
+        assertThat(BookCursor.decode(null)).isNull();
+    }
+
+    @Test
+    void cursorOfAnotherOrderIsRejected() {
+        BookCursor ranked = BookCursor.decode(BookCursor.atOffset(20).encode());
+        assertThatThrownBy(() -> BookCursor.expect(ranked, BookCursor.Kind.CREATED))
+                .hasMessageContaining("different sort");
+
+        BookCursor ascending = BookCursor.decode(BookCursor.afterPrice(false, BigDecimal.TEN, 1).encode());
+        assertThatThrownBy(() -> BookCursor.expect(ascending, BookCursor.Kind.PRICE_DESC))
+                .hasMessageContaining("different sort");
+        assertThat(BookCursor.expect(ascending, BookCursor.Kind.PRICE_ASC)).isSameAs(ascending);
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        assertThatThrownBy(() -> BookCursor.decode("not a cursor"))
+                .hasMessage("Invalid cursor");
+    }
+}
@@ -0,0 +1,43 @@
+package com.bookstore.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookImageCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void filesAboveTheEntryLimitDoNotCountAsMisses() throws Exception {
+        BookImageCache cache = new BookImageCache(1024 * 1024, 1024);
+        Path small = Files.write(dir.resolve("small.jpg"), new byte[100]);
+        Path large = Files.write(dir.resolve("large.jpg"), new byte[4096]);
+
+        assertThat(cache.get(small)).isNotNull();
+        assertThat(cache.get(small)).isNotNull();
+        assertThat(cache.get(large)).isNull();
+        assertThat(cache.get(large)).isNull();
+
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void evictedFileIsReloadedWithItsNewModificationTime() throws Exception {
+        BookImageCache cache = new BookImageCache(1024 * 1024, 1024);
+        Path file = Files.write(dir.resolve("cover.jpg"), new byte[100]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_000_000));
+        assertThat(cache.get(file).lastModified()).isEqualTo(1_000_000);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        cache.evict(file);
+
+        assertThat(cache.get(file).lastModified()).isEqualTo(2_000_000);
+    }
+}
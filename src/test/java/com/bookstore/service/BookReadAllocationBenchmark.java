@@ -0,0 +1,110 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.BookDto;
+import com.bookstore.dto.BookResponseDto;
+import com.bookstore.dto.BookSummary;
+import com.bookstore.model.Book;
+import com.bookstore.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Bytes allocated per full book list read, loading managed entities and copying them into DTOs
+ * (as before the record projections) against selecting {@link BookSummary} records. Not part of
+ * the regular test run: mvn test -Dtest=BookReadAllocationBenchmark with BOOKSTORE_TEST_DB_URL,
+ * BOOKSTORE_TEST_DB_USER and BOOKSTORE_TEST_DB_PASSWORD pointing at a scratch MySQL database;
+ * books are added to it until it holds at least {@value #BOOKS}.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "BOOKSTORE_TEST_DB_URL", matches = ".+")
+class BookReadAllocationBenchmark {
+
+    private static final int BOOKS = 5000;
+    private static final int WARMUP = 20;
+    private static final int RUNS = 50;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void dataSource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("BOOKSTORE_TEST_DB_URL"));
+        registry.add("spring.datasource.username", () -> System.getenv("BOOKSTORE_TEST_DB_USER"));
+        registry.add("spring.datasource.password", () -> System.getenv("BOOKSTORE_TEST_DB_PASSWORD"));
+    }
+
+    @BeforeEach
+    void addBooks() {
+        String description = "A long description. ".repeat(50);
+        for (long i = bookService.countBooks(); i < BOOKS; i++) {
+            BookDto book = new BookDto();
+            book.setBookId("BENCH-" + i);
+            book.setBookName("Benchmark Book " + i);
+            book.setPrice(new BigDecimal("12.50"));
+            book.setDescription(description);
+            book.setAuthorName("Benchmark Author " + i % 100);
+            bookService.addBook(book, null);
+        }
+    }
+
+    @Test
+    void entitiesAgainstProjections() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        long entities = allocatedPerRun(() -> readOnly.execute(status ->
+                bookRepository.findWithContentAfter(0L, PageRequest.of(0, Integer.MAX_VALUE)).stream()
+                        .map(BookReadAllocationBenchmark::copyEntity)
+                        .collect(Collectors.toList())));
+        long projections = allocatedPerRun(() -> readOnly.execute(status ->
+                bookRepository.findAvailableSummaries().stream()
+                        .map(BookReadAllocationBenchmark::copySummary)
+                        .collect(Collectors.toList())));
+
+        long books = bookService.countBooks();
+        System.out.printf("full list read, %d books%n", books);
+        System.out.printf("  entities:    %,d bytes (%,d per book)%n", entities, entities / books);
+        System.out.printf("  projections: %,d bytes (%,d per book)%n", projections, projections / books);
+    }
+
+    private static long allocatedPerRun(Supplier<List<BookResponseDto>> read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < WARMUP; i++) {
+            read.get();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < RUNS; i++) {
+            read.get();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / RUNS;
+    }
+
+    private static BookResponseDto copyEntity(Book book) {
+        return new BookResponseDto(book.getId(), book.getBookId(), book.getBookName(), book.getPrice(),
+                book.getDescription(), book.getAuthorName(), book.getImagePath(), book.getAvailable(),
+                book.getCreatedAt(), book.getUpdatedAt());
+    }
+
+    private static BookResponseDto copySummary(BookSummary book) {
+        return new BookResponseDto(book.id(), book.bookId(), book.bookName(), book.price(), null,
+                book.authorName(), book.imagePath(), book.available(), book.createdAt(), book.updatedAt());
+    }
+}
@@ -0,0 +1,113 @@
+package com.bookstore.service;
+
+import com.bookstore.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of fuzzy searches over an index of one million generated titles, each query with a
+ * typo in one of its words. Needs no database but a few GB of heap, so it is not part of the
+ * regular test run: mvn test -Dtest=BookSearchFuzzyBenchmark -DargLine=-Xmx3g
+ */
+class BookSearchFuzzyBenchmark {
+
+    private static final int TITLES = 1_000_000;
+    private static final int WORDS = 20_000;
+    private static final int AUTHORS = 50_000;
+    private static final int WARMUP = 2_000;
+    private static final int QUERIES = 5_000;
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ran", "te", "vos", "du", "shi", "per", "an",
+            "gor", "el", "tis", "ben", "ru", "qua", "zen", "hol", "ma", "dri"};
+
+    @Test
+    void fuzzySearchAtOneMillionTitles() {
+        Random random = new Random(42);
+        String[] words = new String[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = word(random);
+        }
+        String[] authors = new String[AUTHORS];
+        for (int i = 0; i < AUTHORS; i++) {
+            authors[i] = capitalize(word(random)) + " " + capitalize(word(random));
+        }
+
+        BookSearchIndex index = new BookSearchIndex();
+        long started = System.nanoTime();
+        index.startRebuild();
+        String[] titles = new String[TITLES];
+        for (int i = 0; i < TITLES; i++) {
+            titles[i] = words[random.nextInt(WORDS)] + " " + words[random.nextInt(WORDS)] + " "
+                    + words[random.nextInt(WORDS)];
+            Book book = new Book();
+            book.setId((long) i + 1);
+            book.setBookId("B" + i);
+            book.setBookName(titles[i]);
+            book.setAuthorName(authors[random.nextInt(AUTHORS)]);
+            book.setPrice(BigDecimal.TEN);
+            index.rebuildAdd(book);
+        }
+        index.finishRebuild();
+        long buildMillis = (System.nanoTime() - started) / 1_000_000;
+
+        String[] queries = new String[WARMUP + QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            String[] title = titles[random.nextInt(TITLES)].split(" ");
+            int typo = random.nextInt(title.length);
+            title[typo] = misspell(title[typo], random);
+            queries[i] = title[0] + " " + title[1];
+        }
+        int found = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            index.searchFuzzy(queries[i]);
+        }
+        long[] nanos = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            long[] matches = index.searchFuzzy(queries[WARMUP + i]);
+            nanos[i] = System.nanoTime() - start;
+            if (matches.length > 0) {
+                found++;
+            }
+        }
+        Arrays.sort(nanos);
+
+        System.out.printf("fuzzy search, %,d titles (index built in %,d ms)%n", TITLES, buildMillis);
+        System.out.printf("  p50 %.3f ms, p99 %.3f ms, max %.3f ms, %d of %d queries matched%n",
+                nanos[QUERIES / 2] / 1e6, nanos[QUERIES * 99 / 100] / 1e6, nanos[QUERIES - 1] / 1e6, found, QUERIES);
+        assertThat(found).isGreaterThan(QUERIES * 9 / 10);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Swap two neighbouring letters, or replace one
+     */
+    private static String misspell(String word, Random random) {
+        char[] letters = word.toCharArray();
+        int at = random.nextInt(letters.length - 1);
+        if (random.nextBoolean()) {
+            char swapped = letters[at];
+            letters[at] = letters[at + 1];
+            letters[at + 1] = swapped;
+        } else {
+            letters[at] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+}
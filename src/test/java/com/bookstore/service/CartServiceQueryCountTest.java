@@ -0,0 +1,76 @@
+package com.bookstore.service;
+
+import com.bookstore.dto.CartLine;
+import com.bookstore.dto.CartViewDto;
+import com.bookstore.dto.UserSummary;
+import com.bookstore.model.User;
+import com.bookstore.repository.CartItemRepository;
+import com.bookstore.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Database reads behind the cart page: one user lookup and one joined line query, however
+ * often the page reads the cart
+ */
+class CartServiceQueryCountTest {
+
+    private static final Long USER_ID = 7L;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final CartItemRepository cartItemRepository = mock(CartItemRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private CartStore cartStore;
+    private CartService cartService;
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findActiveSummaryByUsername("alice")).thenReturn(Optional.of(new UserSummary(USER_ID, "alice",
+                "alice@example.com", "Alice", "0000000000", "Street 1", User.Role.USER, true, null, null)));
+        when(cartItemRepository.findLinesByUserId(USER_ID)).thenReturn(List.of(
+                new CartLine(1L, 10L, "First Book", "Author A", null, new BigDecimal("12.50"), 2),
+                new CartLine(2L, 11L, "Second Book", "Author B", null, new BigDecimal("5.00"), 1)));
+        cartStore = new CartStore(cartItemRepository, jdbcTemplate, mock(PlatformTransactionManager.class), 500, 1_800_000);
+        cartService = new CartService(mock(BookService.class), cartStore, new PrincipalCache(userRepository, 100));
+    }
+
+    @AfterEach
+    void shutdown() {
+        cartStore.shutdown();
+    }
+
+    @Test
+    void cartPageReadsTheCartWithOneQuery() {
+        CartViewDto cart = cartService.getCart("alice");
+
+        assertThat(cart.getItems()).hasSize(2);
+        assertThat(cart.getTotal()).isEqualByComparingTo("30.00");
+        verify(userRepository, times(1)).findActiveSummaryByUsername("alice");
+        verify(cartItemRepository, times(1)).findLinesByUserId(USER_ID);
+        verifyNoMoreInteractions(userRepository, cartItemRepository);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void laterReadsOfTheSameCartQueryNothing() {
+        cartService.getCart("alice");
+        cartService.getCartItems("alice");
+        cartService.getCartTotal("alice");
+        cartService.getCartItemCount("alice");
+
+        verify(userRepository, times(1)).findActiveSummaryByUsername("alice");
+        verify(cartItemRepository, times(1)).findLinesByUserId(USER_ID);
+        verifyNoMoreInteractions(userRepository, cartItemRepository);
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,102 @@
+package com.bookstore.service;
+
+import com.bookstore.repository.CartItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Concurrent adds of the same book through two cart stores, standing in for two instances that
+ * share no locks. Needs a MySQL server, e.g. BOOKSTORE_TEST_DB_URL=jdbc:mysql://localhost:3306/
+ * with BOOKSTORE_TEST_DB_USER and BOOKSTORE_TEST_DB_PASSWORD for a user that may create databases;
+ * the test creates a database of its own with a random name and drops it afterwards.
+ */
+@EnabledIfEnvironmentVariable(named = "BOOKSTORE_TEST_DB_URL", matches = ".+")
+class CartStoreConcurrencyTest {
+
+    private static final int THREADS_PER_STORE = 8;
+    private static final int ADDS_PER_THREAD = 50;
+
+    private final String database = "bookstore_cart_test_" + UUID.randomUUID().toString().replace("-", "");
+    private JdbcTemplate server;
+    private JdbcTemplate jdbcTemplate;
+    private final List<CartStore> stores = new ArrayList<>();
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource serverDataSource = new DriverManagerDataSource(System.getenv("BOOKSTORE_TEST_DB_URL"),
+                System.getenv("BOOKSTORE_TEST_DB_USER"), System.getenv("BOOKSTORE_TEST_DB_PASSWORD"));
+        server = new JdbcTemplate(serverDataSource);
+        server.execute("create database " + database);
+        // Every connection the stores open works in the scratch database
+        DataSource dataSource = new DelegatingDataSource(serverDataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                connection.setCatalog(database);
+                return connection;
+            }
+        };
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table cart_items (id bigint auto_increment primary key, user_id bigint not null, " +
+                "book_id bigint not null, quantity int not null, price_at_addition decimal(38, 2) not null, " +
+                "added_at datetime(6) not null, constraint uk_cart_items_user_book unique (user_id, book_id))");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        for (int i = 0; i < 2; i++) {
+            stores.add(new CartStore(mock(CartItemRepository.class), jdbcTemplate, transactionManager, 500, 1_800_000));
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        stores.forEach(CartStore::shutdown);
+        if (server != null) {
+            server.execute("drop database if exists " + database);
+        }
+    }
+
+    @Test
+    void concurrentAddsOfTheSameBookAreNeitherLostNorDuplicated() throws Exception {
+        CartStore.NewLine book = new CartStore.NewLine(1L, "Book", "Author", null, new BigDecimal("9.99"), 1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_STORE * stores.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> adders = new ArrayList<>();
+        for (CartStore store : stores) {
+            for (int i = 0; i < THREADS_PER_STORE; i++) {
+                adders.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < ADDS_PER_THREAD; j++) {
+                        store.withCart(1L, cart -> cart.add(List.of(book)));
+                    }
+                    return null;
+                }));
+            }
+        }
+        start.countDown();
+        for (Future<?> adder : adders) {
+            adder.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<Integer> quantities = jdbcTemplate.queryForList(
+                "select quantity from cart_items where user_id = 1 and book_id = 1", Integer.class);
+        assertThat(quantities).containsExactly(stores.size() * THREADS_PER_STORE * ADDS_PER_THREAD);
+    }
+}
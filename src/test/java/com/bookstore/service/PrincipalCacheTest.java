@@ -0,0 +1,51 @@
+package com.bookstore.service;
+
+import com.bookstore.model.User;
+import com.bookstore.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PrincipalCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PrincipalCache cache = new PrincipalCache(userRepository, 100);
+
+    @Test
+    void userLoadedBeforeAnEvictionIsNotCached() {
+        long generation = cache.generation();
+        User user = user(true);
+        cache.evict(user.getUsername());
+        when(userRepository.findActiveSummaryByUsername("alice")).thenReturn(Optional.empty());
+
+        cache.put(user, generation);
+
+        assertThat(cache.find("alice")).isEmpty();
+    }
+
+    @Test
+    void deactivatedUserNoLongerResolves() {
+        cache.put(user(true), cache.generation());
+        assertThat(cache.find("alice")).isPresent();
+
+        // Deactivation evicts; the reload only finds active users
+        cache.evict("alice");
+        when(userRepository.findActiveSummaryByUsername("alice")).thenReturn(Optional.empty());
+
+        assertThat(cache.find("alice")).isEmpty();
+        cache.put(user(false), cache.generation());
+        assertThat(cache.find("alice")).isEmpty();
+    }
+
+    private static User user(boolean active) {
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setRole(User.Role.USER);
+        user.setActive(active);
+        return user;
+    }
+}